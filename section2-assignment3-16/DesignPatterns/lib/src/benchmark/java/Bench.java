@@ -0,0 +1,70 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+// Minimal microbenchmark runner. JMH refuses benchmark classes in the unnamed
+// package, and every class in this project lives there, so this does the
+// parts we need by hand: warmup, timed iterations sized to a target duration,
+// and per-thread allocation from the HotSpot ThreadMXBean (the same counter
+// JMH's gc profiler reads).
+public final class Bench {
+	public interface Body {
+		// performs ops operations and returns something derived from the results
+		// so the JIT can't discard the work
+		long run(long ops);
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private final String filter;
+	private final int warmups = Integer.getInteger("bench.warmups", 5);
+	private final int iterations = Integer.getInteger("bench.iterations", 5);
+	private final long iterationNanos = Long.getLong("bench.millis", 200) * 1_000_000;
+	private long sink;
+
+	public Bench(String filter) {
+		this.filter = filter;
+		System.out.printf(Locale.ROOT, "%-48s %16s %14s %12s %12s%n", "benchmark", "ops/s", "ns/op", "B/op", "MB/s alloc");
+	}
+
+	public void run(String name, Body body) {
+		if (!name.contains(filter)) {
+			return;
+		}
+		long ops = 1;
+		while (true) {
+			long start = System.nanoTime();
+			sink += body.run(ops);
+			if (System.nanoTime() - start > iterationNanos / 10 || ops >= 1L << 40) {
+				break;
+			}
+			ops *= 2;
+		}
+		for (int i = 0; i < warmups; i++) {
+			sink += body.run(ops);
+		}
+		long thread = Thread.currentThread().getId();
+		long totalOps = 0;
+		long totalNanos = 0;
+		long totalBytes = 0;
+		for (int i = 0; i < iterations; i++) {
+			long n = ops;
+			long bytes = THREADS.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			while (System.nanoTime() - start < iterationNanos) {
+				sink += body.run(n);
+				totalOps += n;
+			}
+			totalNanos += System.nanoTime() - start;
+			totalBytes += THREADS.getThreadAllocatedBytes(thread) - bytes;
+		}
+		double nsPerOp = (double) totalNanos / totalOps;
+		double seconds = totalNanos / 1e9;
+		System.out.printf(Locale.ROOT, "%-48s %16.1f %14.3f %12.2f %12.1f%n", name, totalOps / seconds, nsPerOp,
+				(double) totalBytes / totalOps, totalBytes / seconds / (1 << 20));
+	}
+
+	public long getSink() {
+		return sink;
+	}
+}
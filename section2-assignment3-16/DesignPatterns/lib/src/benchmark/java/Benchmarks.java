@@ -0,0 +1,17 @@
+
+// Runs every benchmark whose name contains the first argument (all of them if
+// there is none). Every benchmark reports throughput, average time per op and
+// allocation per op; what one op is depends on the benchmark (one getValue(),
+// one report(), one full 92-term fibonacci pass, ...).
+public final class Benchmarks {
+	private Benchmarks() {
+	}
+
+	public static void main(String[] args) {
+		Bench bench = new Bench(args.length > 0 ? args[0] : "");
+		TermBenchmark.run(bench);
+		CensusBenchmark.run(bench);
+		FibonacciBenchmark.run(bench);
+		System.out.println("# sink " + bench.getSink());
+	}
+}
@@ -0,0 +1,285 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class CensusBenchmark {
+	private CensusBenchmark() {
+	}
+
+	public static void run(Bench bench) {
+		City[] cities = cities(4096, 42);
+		for (int observers : new int[] { 1, 10, 100, 1_000, 10_000 }) {
+			CensusOffice office = new CensusOffice(1);
+			Counter[] counters = new Counter[observers];
+			for (int i = 0; i < observers; i++) {
+				counters[i] = new Counter();
+				office.addObserver(counters[i]);
+			}
+			bench.run("census.report.observers" + observers, ops -> {
+				for (long i = 0; i < ops; i++) {
+					office.report(cities[(int) (i & 4095)]);
+				}
+				return counters[0].total;
+			});
+		}
+		List<City> chunk = List.of(cities).subList(0, 1024);
+		CensusOffice batched = new CensusOffice(2);
+		TopFiveCities batchedTop = new TopFiveCities();
+		batched.addObserver(batchedTop);
+		batched.addObserver(new LastCity());
+		bench.run("census.reportAll1024.topFive+lastCity", ops -> {
+			for (long i = 0; i < ops; i++) {
+				batched.reportAll(chunk);
+			}
+			return batchedTop.getTopFive().size();
+		});
+		for (int history : new int[] { 1_000, 100_000, 1_000_000 }) {
+			CensusOffice office = new CensusOffice(3);
+			TopFiveCities top = new TopFiveCities();
+			office.addObserver(top);
+			City[] reported = cities(history, 7);
+			for (City city : reported) {
+				office.report(city);
+			}
+			bench.run("census.topFive.history" + history + ".report+getTopFive", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					office.report(cities[(int) (i & 4095)]);
+					sum += top.getTopFive().get(0).getPopulation();
+				}
+				return sum;
+			});
+		}
+		CensusOffice sharded = new CensusOffice(4);
+		TopCitiesByState byState = new TopCitiesByState();
+		sharded.addObserver(byState);
+		bench.run("census.byState.report", ops -> {
+			for (long i = 0; i < ops; i++) {
+				sharded.report(cities[(int) (i & 4095)]);
+			}
+			return byState.getTop("S0").size();
+		});
+		bench.run("census.byState.getTopOfState", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += byState.getTop("S" + (i % 50)).size();
+			}
+			return sum;
+		});
+		bench.run("census.byState.getTop", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += byState.getTop().get(0).getPopulation();
+			}
+			return sum;
+		});
+		CensusOffice counted = new CensusOffice(5);
+		PopulationStats stats = new PopulationStats();
+		counted.addObserver(stats);
+		bench.run("census.stats.report", ops -> {
+			for (long i = 0; i < ops; i++) {
+				counted.report(cities[(int) (i & 4095)]);
+			}
+			return stats.snapshot().getNation().getCount();
+		});
+		bench.run("census.stats.reportAll1024", ops -> {
+			for (long i = 0; i < ops; i++) {
+				counted.reportAll(chunk);
+			}
+			return stats.snapshot().getNation().getCount();
+		});
+		bench.run("census.stats.snapshot", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += stats.snapshot().get("S7").getCount();
+			}
+			return sum;
+		});
+		CensusOffice sketched = new CensusOffice(6);
+		PopulationQuantiles quantiles = new PopulationQuantiles();
+		sketched.addObserver(quantiles);
+		bench.run("census.quantiles.add", ops -> {
+			for (long i = 0; i < ops; i++) {
+				quantiles.add(cities[(int) (i & 4095)].getPopulation());
+			}
+			return quantiles.getCount();
+		});
+		bench.run("census.quantiles.report", ops -> {
+			for (long i = 0; i < ops; i++) {
+				sketched.report(cities[(int) (i & 4095)]);
+			}
+			return quantiles.getCount();
+		});
+		bench.run("census.quantiles.reportAll1024", ops -> {
+			for (long i = 0; i < ops; i++) {
+				sketched.reportAll(chunk);
+			}
+			return quantiles.getCount();
+		});
+		bench.run("census.quantiles.p99", ops -> {
+			double sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += quantiles.getQuantile(0.99);
+			}
+			return (long) sum;
+		});
+		for (boolean direct : new boolean[] { false, true }) {
+			CityStore store = new CityStore(1024, direct);
+			for (City city : cities(1_000_000, 7)) {
+				store.add(city);
+			}
+			String name = "census.store1M." + (direct ? "direct" : "heap");
+			bench.run(name + ".top5", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					sum += store.top(5)[0];
+				}
+				return sum;
+			});
+			bench.run(name + ".top5OfState", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					sum += store.top(5, "S7")[0];
+				}
+				return sum;
+			});
+			bench.run(name + ".cursorSum", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					for (CityStore.Cursor c = store.cursor(); c.next(); ) {
+						sum += c.getPopulation();
+					}
+				}
+				return sum;
+			});
+		}
+		try {
+			load(bench);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// one op loads a 1M-record file; the reader variants are the
+	// BufferedReader and String.split loop CensusLoader replaces. LastCity
+	// costs next to nothing, so those runs measure ingestion alone.
+	private static void load(Bench bench) throws IOException {
+		Path file = Files.createTempFile("census", ".csv");
+		file.toFile().deleteOnExit();
+		try (var out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (City city : cities(1_000_000, 11)) {
+				out.write(city.getName() + "," + city.getState() + "," + city.getPopulation() + "\n");
+			}
+		}
+		bench.run("census.load1M.reader.lastCity", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				CensusOffice office = new CensusOffice(1);
+				LastCity top = new LastCity();
+				office.addObserver(top);
+				try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+					String line;
+					while ((line = in.readLine()) != null) {
+						String[] fields = line.split(",");
+						office.report(new City(fields[0], fields[1], Integer.parseInt(fields[2])));
+					}
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				sum += top.getLastCity().getPopulation();
+			}
+			return sum;
+		});
+		bench.run("census.load1M.reader.byState", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				CensusOffice office = new CensusOffice(1);
+				TopCitiesByState top = new TopCitiesByState();
+				office.addObserver(top);
+				try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+					String line;
+					while ((line = in.readLine()) != null) {
+						String[] fields = line.split(",");
+						office.report(new City(fields[0], fields[1], Integer.parseInt(fields[2])));
+					}
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				sum += top.getTop().get(0).getPopulation();
+			}
+			return sum;
+		});
+		CensusLoader loader = new CensusLoader();
+		bench.run("census.load1M.mapped.lastCity", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				CensusOffice office = new CensusOffice(1);
+				LastCity top = new LastCity();
+				office.addObserver(top);
+				try {
+					loader.load(file, office);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				sum += top.getLastCity().getPopulation();
+			}
+			return sum;
+		});
+		bench.run("census.load1M.mapped.byState", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				CensusOffice office = new CensusOffice(1);
+				TopCitiesByState top = new TopCitiesByState();
+				office.addObserver(top);
+				try {
+					loader.load(file, office);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				sum += top.getTop().get(0).getPopulation();
+			}
+			return sum;
+		});
+		bench.run("census.load1M.mapped.parallel.byState", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				try {
+					sum += loader.load(file, TopCitiesByState::new).getTop().get(0).getPopulation();
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return sum;
+		});
+	}
+
+	static City[] cities(int count, long seed) {
+		Random random = new Random(seed);
+		List<City> cities = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			cities.add(new City("City" + i, "S" + random.nextInt(50), random.nextInt(10_000_000)));
+		}
+		return cities.toArray(new City[0]);
+	}
+
+	private static final class Counter implements Observer {
+		private long total;
+
+		@Override
+		public void update(Observable observable) {
+			total += ((CensusOffice) observable).getReported().getPopulation();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+public final class FibonacciBenchmark {
+	private FibonacciBenchmark() {
+	}
+
+	public static void run(Bench bench) {
+		Fibonacci fibonacci = new Fibonacci();
+		bench.run("fibonacci.iterate.boxed", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				Iterator<Long> iterator = fibonacci.iterator();
+				while (iterator.hasNext()) {
+					sum += iterator.next();
+				}
+			}
+			return sum;
+		});
+		bench.run("fibonacci.iterate.primitive", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				PrimitiveIterator.OfLong iterator = fibonacci.iterator();
+				while (iterator.hasNext()) {
+					sum += iterator.nextLong();
+				}
+			}
+			return sum;
+		});
+		bench.run("fibonacci.stream", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += fibonacci.stream().sum();
+			}
+			return sum;
+		});
+		bench.run("fibonacci.get92.doubling", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += Fibonacci.get(92 - (i & 1));
+			}
+			return sum;
+		});
+		bench.run("fibonacci.get92.iterate", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				PrimitiveIterator.OfLong iterator = fibonacci.iterator();
+				long value = 0;
+				for (long n = 92 - (i & 1); n > 0; n--) {
+					value = iterator.nextLong();
+				}
+				sum += value;
+			}
+			return sum;
+		});
+	}
+}
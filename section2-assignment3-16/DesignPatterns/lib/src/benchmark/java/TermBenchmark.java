@@ -0,0 +1,386 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+
+public final class TermBenchmark {
+	private TermBenchmark() {
+	}
+
+	public static void run(Bench bench) {
+		TermGenerator generator = new TermGenerator();
+		for (int depth : new int[] { 10, 100, 1000 }) {
+			Term deep = deep(depth);
+			bench.run("term.deep" + depth + ".getValue", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					sum += deep.getValue();
+				}
+				return sum;
+			});
+			bench.run("term.deep" + depth + ".iterative", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					sum += IterativeEvaluator.evaluate(deep);
+				}
+				return sum;
+			});
+			// with constant leaves the JIT folds a generated class to a constant,
+			// so these chains start from an input that changes every op
+			Input input = new Input();
+			Term seeded = deep(depth, input);
+			Formula generated = generator.generate(seeded);
+			bench.run("term.deep" + depth + ".input.getValue", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					input.value = (int) i;
+					sum += seeded.getValue();
+				}
+				return sum;
+			});
+			bench.run("term.deep" + depth + ".input.generated", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					input.value = (int) i;
+					sum += generated.getValue();
+				}
+				return sum;
+			});
+		}
+		for (int height : new int[] { 4, 10, 16 }) {
+			Term wide = wide(height, 1);
+			bench.run("term.wide" + (1 << height) + ".getValue", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					sum += wide.getValue();
+				}
+				return sum;
+			});
+			bench.run("term.wide" + (1 << height) + ".iterative", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					sum += IterativeEvaluator.evaluate(wide);
+				}
+				return sum;
+			});
+		}
+		// an opaque leaf keeps the optimizer from folding everything away
+		Term opaque = new Number(2) {
+			@Override
+			public int getValue() {
+				return 2;
+			}
+		};
+		Term redundant = new Plus(deep(1000), opaque);
+		for (int i = 0; i < 1000; i++) {
+			redundant = new Plus(new Times(redundant, new Number(1)), new Times(opaque, new Plus(new Number(i), new Number(0))));
+		}
+		Term source = redundant;
+		Term optimized = TermOptimizer.optimize(source);
+		bench.run("term.redundant.getValue", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += source.getValue();
+			}
+			return sum;
+		});
+		bench.run("term.redundant.optimized", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += optimized.getValue();
+			}
+			return sum;
+		});
+		bench.run("term.redundant.optimize", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += System.identityHashCode(TermOptimizer.optimize(source));
+			}
+			return sum;
+		});
+		Term huge = wide(20, 1);
+		CompiledTerm compiled = TermCompiler.compile(huge);
+		ParallelEvaluator parallel = new ParallelEvaluator();
+		bench.run("term.wide1048576.getValue", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += huge.getValue();
+			}
+			return sum;
+		});
+		bench.run("term.wide1048576.compiled", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += compiled.getValue();
+			}
+			return sum;
+		});
+		bench.run("term.wide1048576.parallel", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += parallel.evaluate(compiled);
+			}
+			return sum;
+		});
+		// wide() overflows an int, so the modes that check compare on sums of
+		// small products instead
+		CompiledTerm medium = TermCompiler.compile(sums(10, 1));
+		bench.run("term.sums1024.compiled", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += medium.getValue();
+			}
+			return sum;
+		});
+		bench.run("term.sums1024.exact", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += medium.getExactValue();
+			}
+			return sum;
+		});
+		bench.run("term.sums1024.long", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += medium.getLongValue();
+			}
+			return sum;
+		});
+		bench.run("term.sums1024.big", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += medium.getBigValue().bitLength();
+			}
+			return sum;
+		});
+		ByteBuffer encoded = TermCodec.encode(huge);
+		bench.run("term.wide1048576.encoded", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += TermCodec.evaluate(encoded);
+			}
+			return sum;
+		});
+		bench.run("term.wide1048576.encode", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += TermCodec.encode(huge).remaining();
+			}
+			return sum;
+		});
+		bench.run("term.wide1048576.decode", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += System.identityHashCode(TermCodec.decode(encoded));
+			}
+			return sum;
+		});
+		Term[] factorials = new Term[16];
+		for (int n = 0; n < factorials.length; n++) {
+			factorials[n] = new Factorial(new Number(n % 13));
+		}
+		bench.run("term.factorial0to12.getValue", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += factorials[(int) (i & 15)].getValue();
+			}
+			return sum;
+		});
+		bench.run("term.factorial1000.big", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += Factorials.big(1000).bitLength();
+			}
+			return sum;
+		});
+		// one op evaluates (x0 * 3 + x1) * (x0 + x1 * x2 + 7) over 2^20 rows
+		int rows = 1 << 20;
+		int[][] ints = new int[3][rows];
+		long[][] longs = new long[3][rows];
+		Random random = new Random(1);
+		for (int c = 0; c < 3; c++) {
+			for (int r = 0; r < rows; r++) {
+				ints[c][r] = random.nextInt(1000);
+				longs[c][r] = ints[c][r];
+			}
+		}
+		BulkEvaluator bulk = new BulkEvaluator(formula(new Variable(0), new Variable(1), new Variable(2)));
+		int[] intOut = new int[rows];
+		long[] longOut = new long[rows];
+		bench.run("term.bulk1M.int", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				bulk.evaluate(ints, intOut);
+				sum += intOut[(int) (i & (rows - 1))];
+			}
+			return sum;
+		});
+		bench.run("term.bulk1M.long", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				bulk.evaluate(longs, longOut);
+				sum += longOut[(int) (i & (rows - 1))];
+			}
+			return sum;
+		});
+		bench.run("term.bulk1M.perRow", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				for (int r = 0; r < rows; r++) {
+					intOut[r] = formula(new Number(ints[0][r]), new Number(ints[1][r]), new Number(ints[2][r])).getValue();
+				}
+				sum += intOut[(int) (i & (rows - 1))];
+			}
+			return sum;
+		});
+		Formula generatedFormula = generator.generate(formula(new Variable(0), new Variable(1), new Variable(2)));
+		CompiledTerm compiledFormula = TermCompiler.compile(formula(new Variable(0), new Variable(1), new Variable(2)));
+		bench.run("term.bulk1M.generated", ops -> {
+			long sum = 0;
+			int[] row = new int[3];
+			for (long i = 0; i < ops; i++) {
+				for (int r = 0; r < rows; r++) {
+					row[0] = ints[0][r];
+					row[1] = ints[1][r];
+					row[2] = ints[2][r];
+					intOut[r] = generatedFormula.evaluate(row);
+				}
+				sum += intOut[(int) (i & (rows - 1))];
+			}
+			return sum;
+		});
+		bench.run("term.bulk1M.compiled", ops -> {
+			long sum = 0;
+			int[] row = new int[3];
+			int[] stack = compiledFormula.newStack();
+			for (long i = 0; i < ops; i++) {
+				for (int r = 0; r < rows; r++) {
+					row[0] = ints[0][r];
+					row[1] = ints[1][r];
+					row[2] = ints[2][r];
+					intOut[r] = compiledFormula.evaluate(stack, row);
+				}
+				sum += intOut[(int) (i & (rows - 1))];
+			}
+			return sum;
+		});
+		// one op parses 1 MB, so ops/s is also MB/s
+		String text = text(1 << 20, 1);
+		bench.run("term.parse1MB.string", ops -> {
+			long sum = 0;
+			for (long i = 0; i < ops; i++) {
+				sum += System.identityHashCode(TermParser.parse(text));
+			}
+			return sum;
+		});
+		try {
+			Path file = Files.createTempFile("term", ".txt");
+			file.toFile().deleteOnExit();
+			Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+			bench.run("term.parse1MB.mapped", ops -> {
+				long sum = 0;
+				for (long i = 0; i < ops; i++) {
+					try {
+						sum += System.identityHashCode(TermParser.parse(file));
+					}
+					catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return sum;
+			});
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// an opaque leaf whose value the benchmark can change
+	static final class Input implements Term {
+		int value;
+
+		@Override
+		public int getValue() {
+			return value;
+		}
+	}
+
+	static Term formula(Term x0, Term x1, Term x2) {
+		return new Times(new Plus(new Times(x0, new Number(3)), x1),
+				new Plus(new Plus(x0, new Times(x1, x2)), new Number(7)));
+	}
+
+	// left-deep chain alternating Plus and Times, the shape expression
+	// generators tend to produce
+	static Term deep(int depth) {
+		return deep(depth, new Number(1));
+	}
+
+	static Term deep(int depth, Term t) {
+		for (int i = 0; i < depth; i++) {
+			t = i % 2 == 0 ? new Plus(t, new Number(i)) : new Times(t, new Number(3));
+		}
+		return t;
+	}
+
+	// random expression text of exactly length chars mixing literals of a few
+	// digits, negative literals, factorials and parentheses
+	static String text(int length, long seed) {
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder(length);
+		int open = 0;
+		while (text.length() < length - 32 - open) {
+			if (open < 8 && random.nextInt(8) == 0) {
+				text.append('(');
+				open++;
+				continue;
+			}
+			if (random.nextInt(4) == 0) {
+				text.append(-random.nextInt(1000));
+			}
+			else {
+				text.append(random.nextInt(100000));
+				if (random.nextInt(10) == 0) {
+					text.append('!');
+				}
+			}
+			while (open > 0 && random.nextInt(4) == 0) {
+				text.append(')');
+				open--;
+			}
+			text.append(random.nextBoolean() ? " + " : " * ");
+		}
+		text.append('1');
+		while (open > 0) {
+			text.append(')');
+			open--;
+		}
+		while (text.length() < length) {
+			text.append(' ');
+		}
+		return text.toString();
+	}
+
+	// balanced tree of Plus with 2^height leaves, multiplied in pairs at the
+	// bottom; its value fits in an int
+	static Term sums(int height, int seed) {
+		if (height == 1) {
+			return new Times(wide(0, seed * 2 % 100), wide(0, (seed * 2 + 1) % 100));
+		}
+		return new Plus(sums(height - 1, seed * 2), sums(height - 1, seed * 2 + 1));
+	}
+
+	// balanced tree with 2^height leaves
+	static Term wide(int height, int seed) {
+		if (height == 0) {
+			return seed % 5 == 0 ? new Factorial(new Number(seed % 7)) : new Number(seed);
+		}
+		Term left = wide(height - 1, seed * 2);
+		Term right = wide(height - 1, seed * 2 + 1);
+		return height % 2 == 0 ? new Plus(left, right) : new Times(left, right);
+	}
+}
@@ -0,0 +1,278 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Every observer gets its own bounded queue drained on the executor, so a slow
+// observer only backs up its own queue and never the reporting thread (unless
+// the overflow policy is BLOCK). Under FAIL a full queue only turns the report
+// away from its own observer: the others still get it, and the exception is
+// thrown once all of them have been offered the report. A batch is queued for
+// an observer whole or not at all.
+public class AsyncCensusOffice extends CensusOffice {
+	public enum Overflow {
+		BLOCK, DROP_OLDEST, FAIL
+	}
+
+	private final int capacity;
+	private final Overflow overflow;
+	private final Executor executor;
+	private final Object lock = new Object();
+	private volatile Subscription[] subscriptions = new Subscription[0];
+
+	public AsyncCensusOffice(int num, int capacity, Overflow overflow, Executor executor) {
+		super(num);
+		if (capacity <= 0) {
+			throw new IllegalArgumentException(String.format("capacity must be greater than 0 [%s]", capacity));
+		}
+		if (overflow == null) {
+			throw new IllegalArgumentException("Overflow policy cannot be null");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		}
+		this.capacity = capacity;
+		this.overflow = overflow;
+		this.executor = executor;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public Overflow getOverflow() {
+		return overflow;
+	}
+
+	@Override
+	public boolean addObserver(Observer o) {
+		synchronized (lock) {
+			if (!super.addObserver(o)) {
+				return false;
+			}
+			Subscription[] current = subscriptions;
+			Subscription[] next = Arrays.copyOf(current, current.length + 1);
+			next[current.length] = new Subscription(o);
+			subscriptions = next;
+			return true;
+		}
+	}
+
+	@Override
+	public boolean removeObserver(Observer o) {
+		synchronized (lock) {
+			if (!super.removeObserver(o)) {
+				return false;
+			}
+			Subscription[] current = subscriptions;
+			Subscription[] next = new Subscription[current.length - 1];
+			int i = 0;
+			for (Subscription s : current) {
+				if (s.observer.equals(o)) {
+					s.close();
+				}
+				else {
+					next[i++] = s;
+				}
+			}
+			subscriptions = next;
+			return true;
+		}
+	}
+
+	@Override
+	protected void dispatch(City latest) {
+		Subscription full = null;
+		for (Subscription s : subscriptions) {
+			if (!s.publish(latest) && full == null) {
+				full = s;
+			}
+		}
+		if (full != null) {
+			throw full.full();
+		}
+	}
+
+	@Override
+	protected void dispatchAll(List<City> batch) {
+		Subscription full = null;
+		for (Subscription s : subscriptions) {
+			if (!s.publishAll(batch) && full == null) {
+				full = s;
+			}
+		}
+		if (full != null) {
+			throw full.full();
+		}
+	}
+
+	public int getQueueDepth() {
+		int depth = 0;
+		for (Subscription s : subscriptions) {
+			depth += s.queue.size();
+		}
+		return depth;
+	}
+
+	public int getQueueDepth(Observer o) {
+		return find(o).queue.size();
+	}
+
+	// cities reported but not yet delivered to (or dropped for) the observer
+	public long getLag(Observer o) {
+		Subscription s = find(o);
+		return s.published.get() - s.delivered.get() - s.dropped.get();
+	}
+
+	public long getDropped(Observer o) {
+		return find(o).dropped.get();
+	}
+
+	private Subscription find(Observer o) {
+		for (Subscription s : subscriptions) {
+			if (s.observer.equals(o)) {
+				return s;
+			}
+		}
+		throw new IllegalArgumentException(String.format("observer is not registered [%s]", o));
+	}
+
+	private final class Subscription implements Runnable {
+		private final Observer observer;
+		private final ArrayBlockingQueue<City> queue = new ArrayBlockingQueue<>(capacity);
+		private final List<City> batch = new ArrayList<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private final AtomicLong published = new AtomicLong();
+		private final AtomicLong delivered = new AtomicLong();
+		private final AtomicLong dropped = new AtomicLong();
+		private volatile boolean closed;
+
+		private Subscription(Observer observer) {
+			this.observer = observer;
+		}
+
+		// false if the FAIL policy turned the city away
+		private boolean publish(City c) {
+			if (closed) {
+				return true;
+			}
+			// counted before it can be delivered so getLag() never goes negative
+			published.incrementAndGet();
+			switch (overflow) {
+			case BLOCK:
+				try {
+					queue.put(c);
+				}
+				catch (InterruptedException e) {
+					published.decrementAndGet();
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("interrupted while waiting for queue space", e);
+				}
+				break;
+			case DROP_OLDEST:
+				while (!queue.offer(c)) {
+					if (queue.poll() != null) {
+						dropped.incrementAndGet();
+					}
+				}
+				break;
+			case FAIL:
+				synchronized (this) {
+					if (!queue.offer(c)) {
+						published.decrementAndGet();
+						return false;
+					}
+				}
+				break;
+			}
+			schedule();
+			return true;
+		}
+
+		// under FAIL the batch is queued whole or, if it doesn't fit, not at all
+		private boolean publishAll(List<City> batch) {
+			if (overflow != Overflow.FAIL) {
+				for (City c : batch) {
+					publish(c);
+				}
+				return true;
+			}
+			if (closed) {
+				return true;
+			}
+			// the lock keeps other reporters from filling the space checked for
+			synchronized (this) {
+				if (queue.remainingCapacity() < batch.size()) {
+					return false;
+				}
+				published.addAndGet(batch.size());
+				queue.addAll(batch);
+			}
+			schedule();
+			return true;
+		}
+
+		private IllegalStateException full() {
+			return new IllegalStateException(String.format("queue full for observer %s [capacity %d]", observer, capacity));
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+				}
+				catch (RejectedExecutionException e) {
+					scheduled.set(false);
+					throw e;
+				}
+			}
+		}
+
+		private void close() {
+			closed = true;
+			queue.clear();
+		}
+
+		// drains at most one queue's worth per run so a busy observer doesn't
+		// hog a pooled thread, then reschedules itself if more arrived
+		@Override
+		public void run() {
+			try {
+				if (observer instanceof BatchObserver) {
+					int n = queue.drainTo(batch, capacity);
+					if (n > 0 && !closed) {
+						try {
+							// a copy, since batch is cleared and reused once delivered
+							deliverAll((BatchObserver) observer, List.copyOf(batch));
+						}
+						finally {
+							delivered.addAndGet(n);
+							batch.clear();
+						}
+					}
+				}
+				else {
+					City c;
+					for (int i = 0; i < capacity && !closed && (c = queue.poll()) != null; i++) {
+						try {
+							deliver(observer, c);
+						}
+						finally {
+							delivered.incrementAndGet();
+						}
+					}
+				}
+			}
+			finally {
+				scheduled.set(false);
+				if (!closed && !queue.isEmpty()) {
+					schedule();
+				}
+			}
+		}
+	}
+}
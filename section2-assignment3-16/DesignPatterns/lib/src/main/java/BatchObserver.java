@@ -0,0 +1,5 @@
+import java.util.List;
+
+public interface BatchObserver extends Observer {
+	void updateAll(Observable observable, List<City> cities);
+}
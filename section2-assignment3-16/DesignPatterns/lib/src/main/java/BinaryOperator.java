@@ -21,4 +21,23 @@ public abstract class BinaryOperator implements Term {
 	public Term getRight() {
 		return r;
 	}
+
+	// structural: same operator class and equal operands, compared without
+	// recursion and once per pair of shared subtrees
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || o.getClass() != getClass()) {
+			return false;
+		}
+		return TermEquality.equal(this, (Term) o);
+	}
+
+	// 31 * (31 * class + left) + right, computed once per distinct subtree
+	@Override
+	public int hashCode() {
+		return TermEquality.hash(this);
+	}
 }
@@ -0,0 +1,251 @@
+import java.lang.reflect.Array;
+
+// Evaluates one Term over many rows of input at once. Variable(i) reads
+// column i; row r of the output is the value of the term with every variable
+// bound to row r of its column.
+//
+// The compiled program is run a block of rows at a time: every instruction
+// becomes one tight loop over the block (fill, copy, element-wise add or
+// multiply), which C2 turns into SIMD code, and the per-instruction dispatch
+// is paid once per block instead of once per row. Scratch space is allocated
+// once per call, nothing per row. Opaque Terms are evaluated once per call and
+// must not depend on the rows. Thread-safe.
+public final class BulkEvaluator {
+	static final int BLOCK = 512;
+
+	private final CompiledTerm program;
+	private final int columns;
+
+	public BulkEvaluator(Term term) {
+		this(TermCompiler.compile(term));
+	}
+
+	public BulkEvaluator(CompiledTerm program) {
+		if (program == null) {
+			throw new IllegalArgumentException("Program cannot be null");
+		}
+		this.program = program;
+		int max = -1;
+		for (int pc = 0; pc < program.size(); pc++) {
+			if (program.op(pc) == CompiledTerm.LOAD) {
+				max = Math.max(max, program.arg(pc));
+			}
+		}
+		this.columns = max + 1;
+	}
+
+	// the number of input columns the term reads
+	public int getColumnCount() {
+		return columns;
+	}
+
+	// 32-bit evaluation, wrapping and throwing exactly like getValue() would
+	public void evaluate(int[][] columns, int[] out) {
+		check(columns, out);
+		run(new IntLanes(columns, out, program.getMaxDepth()), out.length);
+	}
+
+	// 64-bit evaluation: int constants and opaque values are widened and the
+	// arithmetic wraps at 64 bits, so rows that overflow an int stay exact;
+	// factorials above 20! throw
+	public void evaluate(long[][] columns, long[] out) {
+		check(columns, out);
+		run(new LongLanes(columns, out, program.getMaxDepth()), out.length);
+	}
+
+	// the one interpreter loop behind both widths; lanes holds the stack of
+	// blocks and does the arithmetic at its width
+	private void run(Lanes lanes, int rows) {
+		int size = program.size();
+		int[] calls = new int[size];
+		for (int pc = 0; pc < size; pc++) {
+			if (program.op(pc) == CompiledTerm.CALL) {
+				calls[pc] = program.call(program.arg(pc)).getValue();
+			}
+		}
+		for (int base = 0; base < rows; base += BLOCK) {
+			int n = Math.min(BLOCK, rows - base);
+			int sp = -1;
+			for (int pc = 0; pc < size; pc++) {
+				switch (program.op(pc)) {
+				case CompiledTerm.CONST:
+					lanes.fill(++sp, n, program.arg(pc));
+					break;
+				case CompiledTerm.CALL:
+					lanes.fill(++sp, n, calls[pc]);
+					break;
+				case CompiledTerm.LOAD:
+					lanes.load(++sp, program.arg(pc), base, n);
+					break;
+				case CompiledTerm.ADD:
+					lanes.add(--sp, n);
+					break;
+				case CompiledTerm.MUL:
+					lanes.multiply(--sp, n);
+					break;
+				case CompiledTerm.FACT:
+					lanes.factorial(sp, n);
+					break;
+				default:
+					throw new IllegalStateException(String.format("bad opcode %s at %s", program.op(pc), pc));
+				}
+			}
+			lanes.store(base, n);
+		}
+	}
+
+	private void check(Object[] columns, Object out) {
+		if (columns == null) {
+			throw new IllegalArgumentException("Columns cannot be null");
+		}
+		if (out == null) {
+			throw new IllegalArgumentException("Output cannot be null");
+		}
+		if (columns.length < this.columns) {
+			throw new IllegalArgumentException(String.format("expected %s columns but got %s", this.columns, columns.length));
+		}
+		int rows = Array.getLength(out);
+		for (int i = 0; i < this.columns; i++) {
+			checkColumn(i, columns[i] == null ? -1 : Array.getLength(columns[i]), rows);
+		}
+	}
+
+	private static void checkColumn(int index, int length, int rows) {
+		if (length < 0) {
+			throw new IllegalArgumentException(String.format("column %s cannot be null", index));
+		}
+		if (length < rows) {
+			throw new IllegalArgumentException(String.format("column %s has %s rows, expected %s", index, length, rows));
+		}
+	}
+
+	// A stack of blocks of one width. Each operation is one loop over the
+	// block, kept trivial so C2's superword pass vectorizes it; add and
+	// multiply fold the block above sp into sp.
+	private abstract static class Lanes {
+		abstract void fill(int sp, int n, int value);
+
+		abstract void load(int sp, int column, int base, int n);
+
+		abstract void add(int sp, int n);
+
+		abstract void multiply(int sp, int n);
+
+		abstract void factorial(int sp, int n);
+
+		// copies the bottom block to the output at base
+		abstract void store(int base, int n);
+	}
+
+	private static final class IntLanes extends Lanes {
+		private final int[][] columns;
+		private final int[] out;
+		private final int[][] stack;
+
+		private IntLanes(int[][] columns, int[] out, int depth) {
+			this.columns = columns;
+			this.out = out;
+			this.stack = new int[depth][BLOCK];
+		}
+
+		@Override
+		void fill(int sp, int n, int value) {
+			int[] a = stack[sp];
+			for (int i = 0; i < n; i++) {
+				a[i] = value;
+			}
+		}
+
+		@Override
+		void load(int sp, int column, int base, int n) {
+			System.arraycopy(columns[column], base, stack[sp], 0, n);
+		}
+
+		@Override
+		void add(int sp, int n) {
+			int[] a = stack[sp];
+			int[] b = stack[sp + 1];
+			for (int i = 0; i < n; i++) {
+				a[i] += b[i];
+			}
+		}
+
+		@Override
+		void multiply(int sp, int n) {
+			int[] a = stack[sp];
+			int[] b = stack[sp + 1];
+			for (int i = 0; i < n; i++) {
+				a[i] *= b[i];
+			}
+		}
+
+		@Override
+		void factorial(int sp, int n) {
+			int[] a = stack[sp];
+			for (int i = 0; i < n; i++) {
+				a[i] = Factorials.exact(a[i]);
+			}
+		}
+
+		@Override
+		void store(int base, int n) {
+			System.arraycopy(stack[0], 0, out, base, n);
+		}
+	}
+
+	private static final class LongLanes extends Lanes {
+		private final long[][] columns;
+		private final long[] out;
+		private final long[][] stack;
+
+		private LongLanes(long[][] columns, long[] out, int depth) {
+			this.columns = columns;
+			this.out = out;
+			this.stack = new long[depth][BLOCK];
+		}
+
+		@Override
+		void fill(int sp, int n, int value) {
+			long[] a = stack[sp];
+			for (int i = 0; i < n; i++) {
+				a[i] = value;
+			}
+		}
+
+		@Override
+		void load(int sp, int column, int base, int n) {
+			System.arraycopy(columns[column], base, stack[sp], 0, n);
+		}
+
+		@Override
+		void add(int sp, int n) {
+			long[] a = stack[sp];
+			long[] b = stack[sp + 1];
+			for (int i = 0; i < n; i++) {
+				a[i] += b[i];
+			}
+		}
+
+		@Override
+		void multiply(int sp, int n) {
+			long[] a = stack[sp];
+			long[] b = stack[sp + 1];
+			for (int i = 0; i < n; i++) {
+				a[i] *= b[i];
+			}
+		}
+
+		@Override
+		void factorial(int sp, int n) {
+			long[] a = stack[sp];
+			for (int i = 0; i < n; i++) {
+				a[i] = Factorials.longExact(a[i]);
+			}
+		}
+
+		@Override
+		void store(int base, int n) {
+			System.arraycopy(stack[0], 0, out, base, n);
+		}
+	}
+}
@@ -0,0 +1,386 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+// Loads CSV files of name,state,population records into census observers.
+// The file is memory-mapped a window at a time and parsed in place: the
+// population is read straight from the mapped bytes, and the only allocations
+// per record are the City and its name, since states become codes.
+// Fields may be quoted ("Washington, D.C.") with "" for a quote, but no field
+// may span lines. An empty field is a null name or state, blank lines are
+// skipped, and a first line whose population is not a number is a header.
+public final class CensusLoader {
+	static final int BATCH = 1024;
+	private static final long WINDOW = 1L << 30;
+	private static final long MIN_CHUNK = 1L << 20;
+
+	private final Executor executor;
+	private final int parallelism;
+	private final long window;
+	private final long minChunk;
+
+	public CensusLoader() {
+		this(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+	}
+
+	public CensusLoader(Executor executor, int parallelism) {
+		this(executor, parallelism, WINDOW, MIN_CHUNK);
+	}
+
+	// window is how much of the file is mapped at a time and minChunk the
+	// least a thread is given; tests make them small to cross the boundaries
+	CensusLoader(Executor executor, int parallelism, long window, long minChunk) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor cannot be null");
+		}
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException(String.format("parallelism must be greater than 0 [%s]", parallelism));
+		}
+		if (window <= 0 || window > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("window out of range [%s]", window));
+		}
+		if (minChunk <= 0) {
+			throw new IllegalArgumentException(String.format("chunk size must be greater than 0 [%s]", minChunk));
+		}
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.window = window;
+		this.minChunk = minChunk;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	// reports every record to the office in file order, BATCH cities per
+	// reportAll; returns the number of records
+	public long load(Path file, CensusOffice office) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Path cannot be null");
+		}
+		if (office == null) {
+			throw new IllegalArgumentException("Office cannot be null");
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new Chunk(channel, 0, channel.size(), new AtomicBoolean()).load(office);
+		}
+	}
+
+	// Splits the file at line breaks into up to parallelism chunks and loads
+	// each on the executor into a fresh observer registered with an office of
+	// its own. The partial results are merged in file order into the first
+	// one, which is returned; that gives the same result as a sequential load
+	// for any observer whose result doesn't depend on how its reports are
+	// batched, such as TopFiveCities or TopCitiesByState. If a chunk fails
+	// the others are stopped at their next batch, and the failure is thrown
+	// once none of them is still reading the channel.
+	public <T extends Observer & Mergeable<T>> T load(Path file, Supplier<T> observers) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Path cannot be null");
+		}
+		if (observers == null) {
+			throw new IllegalArgumentException("Supplier cannot be null");
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			int count = (int) Math.max(1, Math.min(parallelism, size / minChunk));
+			long[] bounds = new long[count + 1];
+			bounds[count] = size;
+			for (int i = 1; i < count; i++) {
+				bounds[i] = Math.max(bounds[i - 1], lineStart(channel, size * i / count));
+			}
+			AtomicBoolean failed = new AtomicBoolean();
+			List<FutureTask<T>> tasks = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				Chunk chunk = new Chunk(channel, bounds[i], bounds[i + 1], failed);
+				CensusOffice office = new CensusOffice(i + 1);
+				tasks.add(new FutureTask<>(() -> {
+					T observer = observers.get();
+					if (observer == null) {
+						throw new IllegalArgumentException("Observer cannot be null");
+					}
+					office.addObserver(observer);
+					chunk.load(office);
+					return observer;
+				}));
+			}
+			for (FutureTask<T> task : tasks) {
+				executor.execute(task);
+			}
+			T result = null;
+			try {
+				for (FutureTask<T> task : tasks) {
+					T partial = join(task);
+					if (result == null) {
+						result = partial;
+					}
+					else {
+						result.merge(partial);
+					}
+				}
+			}
+			catch (Throwable e) {
+				failed.set(true);
+				for (FutureTask<T> task : tasks) {
+					await(task);
+				}
+				throw e;
+			}
+			return result;
+		}
+	}
+
+	// the offset of the first line that starts at or after pos
+	private static long lineStart(FileChannel channel, long pos) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long at = pos - 1;
+		while (true) {
+			buffer.clear();
+			int n = channel.read(buffer, at);
+			if (n <= 0) {
+				return channel.size();
+			}
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '\n') {
+					return at + i + 1;
+				}
+			}
+			at += n;
+		}
+	}
+
+	private static <T> T join(FutureTask<T> task) throws IOException {
+		try {
+			return task.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while loading", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	// waits for the task to finish, whatever its outcome
+	private static void await(FutureTask<?> task) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				task.get();
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+			catch (ExecutionException | CancellationException e) {
+				break;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// one range of whole lines, parsed by one thread
+	private final class Chunk {
+		private final FileChannel channel;
+		private final long from;
+		private final long to;
+		// set once any chunk of the load has failed
+		private final AtomicBoolean failed;
+		private ByteBuffer buffer;
+		private int at;
+		private byte[] scratch = new byte[64];
+		// direct-mapped cache of state codes by the state's bytes
+		private final byte[][] stateBytes = new byte[256][];
+		private final int[] stateCodes = new int[256];
+
+		private Chunk(FileChannel channel, long from, long to, AtomicBoolean failed) {
+			this.channel = channel;
+			this.from = from;
+			this.to = to;
+			this.failed = failed;
+		}
+
+		// maps a window, parses the lines that end inside it and maps the
+		// next window from the first line that didn't
+		private long load(CensusOffice office) throws IOException {
+			long count = 0;
+			List<City> batch = new ArrayList<>(BATCH);
+			long pos = from;
+			while (pos < to && !failed.get()) {
+				int length = (int) Math.min(window, to - pos);
+				boolean last = pos + length == to;
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+				int start = 0;
+				while (start < length) {
+					int end = start;
+					while (end < length && buffer.get(end) != '\n') {
+						end++;
+					}
+					if (end == length && !last) {
+						break;
+					}
+					City city = record(start, end, pos + start);
+					if (city != null) {
+						batch.add(city);
+						count++;
+						if (batch.size() == BATCH) {
+							office.reportAll(batch);
+							batch = new ArrayList<>(BATCH);
+							if (failed.get()) {
+								return count;
+							}
+						}
+					}
+					start = end + 1;
+				}
+				if (start == 0) {
+					throw new IllegalArgumentException(String.format("record too long at offset %s", pos));
+				}
+				pos += Math.min(start, length);
+			}
+			if (!batch.isEmpty()) {
+				office.reportAll(batch);
+			}
+			return count;
+		}
+
+		// the record in buffer[start, end), which starts at offset in the
+		// file; null for a blank line or a header
+		private City record(int start, int end, long offset) {
+			if (end > start && buffer.get(end - 1) == '\r') {
+				end--;
+			}
+			if (end == start) {
+				return null;
+			}
+			at = start;
+			int n = field(end, offset);
+			String name = n == 0 ? null : new String(scratch, 0, n, StandardCharsets.UTF_8);
+			separator(end, offset);
+			n = field(end, offset);
+			separator(end, offset);
+			// a header's state column must not get a code
+			if (offset == 0 && (at == end || !isDigit(buffer.get(at)))) {
+				return null;
+			}
+			int state = stateCode(n);
+			return new City(name, state, population(end, offset));
+		}
+
+		// copies the field at the cursor, unquoted, to scratch and returns
+		// its length
+		private int field(int end, long offset) {
+			int n = 0;
+			if (at < end && buffer.get(at) == '"') {
+				at++;
+				while (true) {
+					if (at == end) {
+						throw malformed(offset);
+					}
+					byte b = buffer.get(at++);
+					if (b == '"') {
+						if (at == end || buffer.get(at) != '"') {
+							break;
+						}
+						at++;
+					}
+					n = append(n, b);
+				}
+			}
+			else {
+				byte b;
+				while (at < end && (b = buffer.get(at)) != ',') {
+					if (b == '"') {
+						throw malformed(offset);
+					}
+					n = append(n, b);
+					at++;
+				}
+			}
+			return n;
+		}
+
+		private int append(int n, byte b) {
+			if (n == scratch.length) {
+				scratch = Arrays.copyOf(scratch, n * 2);
+			}
+			scratch[n] = b;
+			return n + 1;
+		}
+
+		private int stateCode(int n) {
+			if (n == 0) {
+				return 0;
+			}
+			int hash = 0;
+			for (int i = 0; i < n; i++) {
+				hash = 31 * hash + scratch[i];
+			}
+			int slot = (hash ^ hash >>> 8) & (stateCodes.length - 1);
+			byte[] key = stateBytes[slot];
+			if (key == null || !Arrays.equals(key, 0, key.length, scratch, 0, n)) {
+				stateBytes[slot] = Arrays.copyOf(scratch, n);
+				stateCodes[slot] = StateDictionary.code(new String(scratch, 0, n, StandardCharsets.UTF_8));
+			}
+			return stateCodes[slot];
+		}
+
+		private void separator(int end, long offset) {
+			if (at == end || buffer.get(at) != ',') {
+				throw malformed(offset);
+			}
+			at++;
+		}
+
+		private int population(int end, long offset) {
+			int start = at;
+			long value = 0;
+			byte b;
+			while (at < end && isDigit(b = buffer.get(at))) {
+				value = value * 10 + (b - '0');
+				if (value > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException(String.format("population out of range at offset %s", offset));
+				}
+				at++;
+			}
+			if (at == start || at != end) {
+				throw malformed(offset);
+			}
+			return (int) value;
+		}
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static IllegalArgumentException malformed(long offset) {
+		return new IllegalArgumentException(String.format("malformed record at offset %s", offset));
+	}
+}
@@ -1,11 +1,19 @@
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class CensusOffice implements Observable {
-	private List<Observer> observers = new ArrayList<>();
+	// copy-on-write: report() iterates the published arrays without locking or
+	// copying, add/remove republish new ones under the lock
+	private final Object lock = new Object();
+	private final Set<Observer> registered = new HashSet<>();
+	private volatile Observers observers = new Observers(new Observer[0]);
+	private final ThreadLocal<City> dispatching = new ThreadLocal<>();
 	private int number;
-	private City city;
-	
+	private volatile City city;
+
 	public CensusOffice(int num) {
 		if (num <= 0 ) {
 			throw new IllegalArgumentException(String.format("office number must greater that 0 "
@@ -15,42 +23,170 @@ public class CensusOffice implements Observable {
 			number = num;
 		}
 	}
-	
+
 	public boolean addObserver(Observer o) {
-		if (!observers.contains(o)) {
-			observers.add(o);
+		synchronized (lock) {
+			if (!registered.add(o)) {
+				return false;
+			}
+			Observer[] current = observers.all;
+			Observer[] next = Arrays.copyOf(current, current.length + 1);
+			next[current.length] = o;
+			observers = new Observers(next);
 			return true;
 		}
-		else {
-			return false;
-		}
 	}
-	
+
 	public boolean removeObserver(Observer o) {
-		return observers.remove(o);
+		synchronized (lock) {
+			if (!registered.remove(o)) {
+				return false;
+			}
+			Observer[] current = observers.all;
+			Observer[] next = new Observer[current.length - 1];
+			int i = 0;
+			for (Observer each : current) {
+				if (!each.equals(o)) {
+					next[i++] = each;
+				}
+			}
+			observers = new Observers(next);
+			return true;
+		}
 	}
-	
+
 	public boolean hasObservers() {
-		return observers.size() > 0;
+		return observers.all.length > 0;
 	}
-	
+
 	public int getNumber() {
 		return number;
 	}
-	
+
+	// while an observer is being updated it sees the city that triggered the
+	// update, even if another thread reports concurrently
 	public City getReported() {
-		return city;
+		City current = dispatching.get();
+		return current != null ? current : city;
 	}
-	
+
 	public void report(City latest) {
 		if (latest == null) {
 			throw new IllegalArgumentException("City cannot be null");
 		}
 		city = latest;
-		var tempCopy = new ArrayList<>(observers);
-		for (var o: tempCopy) {
+		dispatch(latest);
+	}
+
+	// batch observers get the whole chunk in one call, everyone else is
+	// updated once per city as if report() had been called for each
+	public void reportAll(Collection<City> cities) {
+		if (cities == null) {
+			throw new IllegalArgumentException("Cities cannot be null");
+		}
+		for (City c : cities) {
+			if (c == null) {
+				throw new IllegalArgumentException("City cannot be null");
+			}
+		}
+		if (cities.isEmpty()) {
+			return;
+		}
+		// copied so the caller cannot change the batch while it is delivered
+		List<City> batch = List.copyOf(cities);
+		city = batch.get(batch.size() - 1);
+		dispatchAll(batch);
+	}
+
+	protected void dispatch(City latest) {
+		City previous = dispatching.get();
+		dispatching.set(latest);
+		try {
+			for (Observer o : observers.all) {
+				o.update(this);
+			}
+		}
+		finally {
+			dispatching.set(previous);
+		}
+	}
+
+	protected void dispatchAll(List<City> batch) {
+		Observers current = observers;
+		Observer[] perCity = current.perCity;
+		City previous = dispatching.get();
+		try {
+			if (perCity.length > 0) {
+				for (City c : batch) {
+					dispatching.set(c);
+					for (Observer o : perCity) {
+						o.update(this);
+					}
+				}
+			}
+			dispatching.set(batch.get(batch.size() - 1));
+			for (BatchObserver o : current.batched) {
+				o.updateAll(this, batch);
+			}
+		}
+		finally {
+			dispatching.set(previous);
+		}
+	}
+
+	// lets subclasses that dispatch on other threads update a single observer
+	// with the same getReported() view as a synchronous report
+	protected final void deliver(Observer o, City latest) {
+		City previous = dispatching.get();
+		dispatching.set(latest);
+		try {
 			o.update(this);
 		}
+		finally {
+			dispatching.set(previous);
+		}
 	}
-	
+
+	protected final void deliverAll(BatchObserver o, List<City> batch) {
+		City previous = dispatching.get();
+		dispatching.set(batch.get(batch.size() - 1));
+		try {
+			o.updateAll(this, batch);
+		}
+		finally {
+			dispatching.set(previous);
+		}
+	}
+
+	// the registered observers in order, also split once into those updated
+	// per city and those given a whole batch, so dispatchAll() needn't sort
+	// them on every call
+	private static final class Observers {
+		private final Observer[] all;
+		private final Observer[] perCity;
+		private final BatchObserver[] batched;
+
+		private Observers(Observer[] all) {
+			this.all = all;
+			int batches = 0;
+			for (Observer o : all) {
+				if (o instanceof BatchObserver) {
+					batches++;
+				}
+			}
+			perCity = new Observer[all.length - batches];
+			batched = new BatchObserver[batches];
+			int p = 0;
+			int b = 0;
+			for (Observer o : all) {
+				if (o instanceof BatchObserver) {
+					batched[b++] = (BatchObserver) o;
+				}
+				else {
+					perCity[p++] = o;
+				}
+			}
+		}
+	}
+
 }
@@ -0,0 +1,32 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Creates cities with interned names: the cities one factory creates with
+// equal names share one String, as every City already shares its state's
+// through StateDictionary. Thread-safe; the names are held until the factory
+// is dropped.
+public final class CityFactory {
+	private final ConcurrentMap<String, String> names = new ConcurrentHashMap<>();
+
+	public City create(String name, String state, int population) {
+		return new City(intern(name), StateDictionary.code(state), population);
+	}
+
+	// for callers that already have the state's code
+	public City create(String name, int stateCode, int population) {
+		return new City(intern(name), stateCode, population);
+	}
+
+	public String intern(String name) {
+		if (name == null) {
+			return null;
+		}
+		String shared = names.putIfAbsent(name, name);
+		return shared != null ? shared : name;
+	}
+
+	// the number of distinct names
+	public int size() {
+		return names.size();
+	}
+}
@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+// The k most populous cities, keeping one record per (name, state): a city
+// reported again replaces its earlier record, so a revised population can
+// move it into, up, down or out of the top k. Every distinct city is kept
+// (a demoted city's replacement has to come from somewhere), indexed by key
+// and ordered by population, so an update costs O(log n) for n distinct
+// cities.
+public class CityRanking {
+	// largest first; name and state break ties so that the order is total
+	static final Comparator<City> ORDER = Comparator.comparingInt(City::getPopulation).reversed()
+			.thenComparing(City::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparing(City::getState, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+	private final int k;
+	private final Map<Key, City> index = new HashMap<>();
+	private final TreeSet<City> ranked = new TreeSet<>(ORDER);
+	private List<City> snapshot = List.of();
+	// the k-th city, which a city has to beat to enter the top k; null while
+	// there are fewer than k
+	private City cutoff;
+
+	public CityRanking(int k) {
+		if (k <= 0) {
+			throw new IllegalArgumentException(String.format("k must be greater than 0 [%s]", k));
+		}
+		this.k = k;
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	// the number of ranked cities, at most k
+	public int size() {
+		return Math.min(k, ranked.size());
+	}
+
+	// the number of distinct cities seen
+	public int getDistinct() {
+		return ranked.size();
+	}
+
+	// adds the city or replaces the earlier record with the same name and
+	// state; returns whether the top k changed
+	public boolean offer(City city) {
+		if (city == null) {
+			throw new IllegalArgumentException("City cannot be null");
+		}
+		City old = index.put(new Key(city), city);
+		boolean changed = old != null && remove(old);
+		changed |= add(city);
+		if (changed) {
+			snapshot = null;
+		}
+		return changed;
+	}
+
+	// offers every city of other as if it were reported after this
+	// ranking's own; returns whether the top k changed
+	public boolean merge(CityRanking other) {
+		if (other == null) {
+			throw new IllegalArgumentException("Ranking cannot be null");
+		}
+		boolean changed = false;
+		if (other != this) {
+			for (City city : other.index.values()) {
+				changed |= offer(city);
+			}
+		}
+		return changed;
+	}
+
+	// largest first; rebuilt only after the ranking changed
+	public List<City> getTop() {
+		if (snapshot == null) {
+			List<City> top = new ArrayList<>(k);
+			Iterator<City> it = ranked.iterator();
+			while (top.size() < k && it.hasNext()) {
+				top.add(it.next());
+			}
+			snapshot = Collections.unmodifiableList(top);
+		}
+		return snapshot;
+	}
+
+	// removes city and moves the cutoff; returns whether city was in the top k
+	private boolean remove(City city) {
+		int before = ranked.size();
+		ranked.remove(city);
+		if (before <= k) {
+			cutoff = null;
+			return true;
+		}
+		if (ORDER.compare(city, cutoff) <= 0) {
+			cutoff = ranked.higher(cutoff);
+			return true;
+		}
+		return false;
+	}
+
+	// adds city and moves the cutoff; returns whether city is in the top k
+	private boolean add(City city) {
+		ranked.add(city);
+		int size = ranked.size();
+		if (size < k) {
+			return true;
+		}
+		if (size == k) {
+			cutoff = ranked.last();
+			return true;
+		}
+		if (ORDER.compare(city, cutoff) < 0) {
+			cutoff = ranked.lower(cutoff);
+			return true;
+		}
+		return false;
+	}
+
+	private static final class Key {
+		private final String name;
+		private final int state;
+
+		private Key(City city) {
+			this.name = city.getName();
+			this.state = city.getStateCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return state == other.state && Objects.equals(name, other.name);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Objects.hashCode(name) + state;
+		}
+	}
+}
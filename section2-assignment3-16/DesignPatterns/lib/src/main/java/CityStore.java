@@ -0,0 +1,434 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+// Cities stored by column instead of as City objects: one int column each
+// of populations, name ids and StateDictionary codes, with each distinct
+// name kept once as UTF-8 bytes. A row costs 12 bytes plus its share of the
+// name dictionary and no object at all, and a direct store keeps
+// everything but the dictionary's hash table off the heap.
+// Rows are appended in report order and never change. Read them through a
+// Cursor, which reuses one object for every row, and run top-k queries on
+// the population column without materializing a City. Not thread-safe.
+public final class CityStore implements BatchObserver, Mergeable<CityStore> {
+	private static final int MAX_ROWS = (Integer.MAX_VALUE - 8) / 4;
+
+	private final boolean direct;
+	private ByteBuffer populations;
+	private ByteBuffer names;
+	private ByteBuffer states;
+	private int size;
+	private final Strings nameIds;
+	// rows per state code
+	private int[] stateRows = new int[0];
+
+	public CityStore() {
+		this(1024, false);
+	}
+
+	// direct stores allocate their columns with ByteBuffer.allocateDirect
+	public CityStore(int capacity, boolean direct) {
+		if (capacity <= 0 || capacity > MAX_ROWS) {
+			throw new IllegalArgumentException(String.format("capacity out of range [%s]", capacity));
+		}
+		this.direct = direct;
+		this.populations = allocate(direct, capacity * 4);
+		this.names = allocate(direct, capacity * 4);
+		this.states = allocate(direct, capacity * 4);
+		this.nameIds = new Strings(direct);
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// the number of distinct names and states; null counts as neither
+	public int getNameCount() {
+		return nameIds.size() - 1;
+	}
+
+	public int getStateCount() {
+		int count = 0;
+		for (int code = 1; code < stateRows.length; code++) {
+			if (stateRows[code] > 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// appends the city and returns its row
+	public int add(City city) {
+		if (city == null) {
+			throw new IllegalArgumentException("City cannot be null");
+		}
+		return append(nameIds.id(city.getName()), city.getStateCode(), city.getPopulation());
+	}
+
+	public int add(String name, String state, int population) {
+		return append(nameIds.id(name), StateDictionary.code(state), population);
+	}
+
+	private int append(int name, int state, int population) {
+		if (size == populations.capacity() / 4) {
+			if (size == MAX_ROWS) {
+				throw new IllegalStateException(String.format("store is full [%s rows]", size));
+			}
+			int capacity = (int) Math.min(MAX_ROWS, size * 2L);
+			populations = grow(populations, capacity * 4);
+			names = grow(names, capacity * 4);
+			states = grow(states, capacity * 4);
+		}
+		if (state >= stateRows.length) {
+			stateRows = Arrays.copyOf(stateRows, StateDictionary.size());
+		}
+		stateRows[state]++;
+		int at = size * 4;
+		populations.putInt(at, population);
+		names.putInt(at, name);
+		states.putInt(at, state);
+		return size++;
+	}
+
+	public int getPopulation(int row) {
+		return populations.getInt(Objects.checkIndex(row, size) * 4);
+	}
+
+	public String getName(int row) {
+		return nameIds.get(names.getInt(Objects.checkIndex(row, size) * 4));
+	}
+
+	public String getState(int row) {
+		return StateDictionary.state(states.getInt(Objects.checkIndex(row, size) * 4));
+	}
+
+	// a new City with the row's values
+	public City get(int row) {
+		return new City(getName(row), getState(row), getPopulation(row));
+	}
+
+	// positioned before the first row
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	public void update(Observable o) {
+		if (o instanceof CensusOffice) {
+			add(((CensusOffice) o).getReported());
+		}
+	}
+
+	public void updateAll(Observable o, List<City> cities) {
+		if (o instanceof CensusOffice) {
+			for (City city : cities) {
+				add(city);
+			}
+		}
+	}
+
+	// appends other's rows after this store's, copying dictionary entries
+	// byte for byte rather than through Strings; merging a store into
+	// itself does nothing
+	public void merge(CityStore other) {
+		if (other == null) {
+			throw new IllegalArgumentException("Store cannot be null");
+		}
+		if (other == this) {
+			return;
+		}
+		int count = other.size;
+		int[] nameMap = new int[other.nameIds.size()];
+		Arrays.fill(nameMap, -1);
+		for (int row = 0; row < count; row++) {
+			int at = row * 4;
+			int name = other.names.getInt(at);
+			if (nameMap[name] < 0) {
+				nameMap[name] = nameIds.id(other.nameIds, name);
+			}
+			append(nameMap[name], other.states.getInt(at), other.populations.getInt(at));
+		}
+	}
+
+	// the rows of the k most populous cities, largest first; equal
+	// populations keep row order
+	public int[] top(int k) {
+		return top(k, -1);
+	}
+
+	// the same over the rows of one state; empty for a state never stored
+	public int[] top(int k, String state) {
+		checkK(k);
+		int code = StateDictionary.find(state);
+		return code < 0 || code >= stateRows.length || stateRows[code] == 0 ? new int[0] : top(k, code);
+	}
+
+	private int[] top(int k, int state) {
+		checkK(k);
+		int[] heap = new int[Math.min(k, Math.max(size, 1))];
+		int n = 0;
+		// the population to beat once the heap is full
+		int floor = 0;
+		for (int row = 0; row < size; row++) {
+			if (state >= 0 && states.getInt(row * 4) != state) {
+				continue;
+			}
+			if (n < heap.length) {
+				heap[n] = row;
+				up(heap, n++);
+				floor = populations.getInt(heap[0] * 4);
+			}
+			else if (populations.getInt(row * 4) > floor) {
+				heap[0] = row;
+				down(heap, n);
+				floor = populations.getInt(heap[0] * 4);
+			}
+		}
+		int[] rows = new int[n];
+		while (n > 0) {
+			rows[--n] = heap[0];
+			heap[0] = heap[n];
+			down(heap, n);
+		}
+		return rows;
+	}
+
+	private static int checkK(int k) {
+		if (k <= 0) {
+			throw new IllegalArgumentException(String.format("k must be greater than 0 [%s]", k));
+		}
+		return k;
+	}
+
+	// min-heap of rows, the least populous (then latest) at the root
+
+	private boolean below(int a, int b) {
+		int pa = populations.getInt(a * 4);
+		int pb = populations.getInt(b * 4);
+		return pa < pb || pa == pb && a > b;
+	}
+
+	private void up(int[] heap, int i) {
+		int row = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!below(row, heap[parent])) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = row;
+	}
+
+	private void down(int[] heap, int n) {
+		if (n == 0) {
+			return;
+		}
+		int row = heap[0];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= n) {
+				break;
+			}
+			if (child + 1 < n && below(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!below(heap[child], row)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = row;
+	}
+
+	private static ByteBuffer allocate(boolean direct, int bytes) {
+		ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+		return buffer.order(ByteOrder.nativeOrder());
+	}
+
+	private ByteBuffer grow(ByteBuffer column, int bytes) {
+		ByteBuffer next = allocate(direct, bytes);
+		next.put(column.duplicate().clear());
+		return next;
+	}
+
+	// A flyweight over the store: one object that reads whichever row it is
+	// on. Names and states are decoded only when asked for.
+	public final class Cursor {
+		private int row = -1;
+
+		private Cursor() {
+		}
+
+		public boolean next() {
+			if (row + 1 >= size) {
+				return false;
+			}
+			row++;
+			return true;
+		}
+
+		public Cursor moveTo(int row) {
+			this.row = Objects.checkIndex(row, size);
+			return this;
+		}
+
+		public int getRow() {
+			return row;
+		}
+
+		public int getPopulation() {
+			return populations.getInt(at());
+		}
+
+		public String getName() {
+			return nameIds.get(names.getInt(at()));
+		}
+
+		public String getState() {
+			return StateDictionary.state(states.getInt(at()));
+		}
+
+		public City toCity() {
+			return get(row);
+		}
+
+		private int at() {
+			if (row < 0) {
+				throw new IllegalStateException("cursor is before the first row");
+			}
+			return row * 4;
+		}
+	}
+
+	// Dictionary of strings kept as UTF-8 bytes in one buffer, with an open
+	// addressing table from the bytes' hash to the id. Id 0 is null.
+	private static final class Strings {
+		private final boolean direct;
+		private ByteBuffer bytes;
+		private int used;
+		// ends[id] is where the bytes of id end and those of id + 1 begin
+		private int[] ends = new int[16];
+		private int count = 1;
+		private int[] table = new int[16];
+
+		private Strings(boolean direct) {
+			this.direct = direct;
+			this.bytes = allocate(direct, 256);
+		}
+
+		private int size() {
+			return count;
+		}
+
+		private String get(int id) {
+			if (id == 0) {
+				return null;
+			}
+			int start = ends[id - 1];
+			byte[] utf8 = new byte[ends[id] - start];
+			bytes.duplicate().position(start).get(utf8);
+			return new String(utf8, StandardCharsets.UTF_8);
+		}
+
+		private int id(String s) {
+			if (s == null) {
+				return 0;
+			}
+			byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			return id(ByteBuffer.wrap(utf8), 0, utf8.length);
+		}
+
+		private int id(Strings other, int id) {
+			if (id == 0) {
+				return 0;
+			}
+			int start = other.ends[id - 1];
+			return id(other.bytes, start, other.ends[id] - start);
+		}
+
+		private int id(ByteBuffer source, int from, int length) {
+			int hash = hash(source, from, length);
+			int mask = table.length - 1;
+			for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+				int id = table[slot];
+				if (id == 0) {
+					return insert(slot, source, from, length);
+				}
+				if (equals(id, source, from, length)) {
+					return id;
+				}
+			}
+		}
+
+		private int insert(int slot, ByteBuffer source, int from, int length) {
+			if (used + length > bytes.capacity()) {
+				long capacity = Math.max(bytes.capacity() * 2L, (long) used + length);
+				if (capacity > Integer.MAX_VALUE - 8) {
+					throw new IllegalStateException(String.format("dictionary is full [%s bytes]", used));
+				}
+				ByteBuffer next = allocate(direct, (int) capacity);
+				next.put(bytes.duplicate().position(0).limit(used));
+				bytes = next;
+			}
+			for (int i = 0; i < length; i++) {
+				bytes.put(used + i, source.get(from + i));
+			}
+			used += length;
+			if (count == ends.length) {
+				ends = Arrays.copyOf(ends, count * 2);
+			}
+			int id = count++;
+			ends[id] = used;
+			table[slot] = id;
+			if (count * 2 > table.length) {
+				rehash();
+			}
+			return id;
+		}
+
+		private void rehash() {
+			int[] next = new int[table.length * 2];
+			int mask = next.length - 1;
+			for (int id = 1; id < count; id++) {
+				int start = ends[id - 1];
+				int slot = hash(bytes, start, ends[id] - start) & mask;
+				while (next[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				next[slot] = id;
+			}
+			table = next;
+		}
+
+		private boolean equals(int id, ByteBuffer source, int from, int length) {
+			int start = ends[id - 1];
+			if (ends[id] - start != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (bytes.get(start + i) != source.get(from + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static int hash(ByteBuffer source, int from, int length) {
+			int h = 0;
+			for (int i = 0; i < length; i++) {
+				h = 31 * h + source.get(from + i);
+			}
+			return h ^ h >>> 16;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// A Term flattened into a postfix program for a small stack machine. Built by
+// TermCompiler; evaluates without recursion or allocation. Programs that load
+// variables have no value of their own; run them with evaluate(stack,
+// variables) or BulkEvaluator.
+public final class CompiledTerm implements Term {
+	static final byte CONST = 0;
+	static final byte CALL  = 1;
+	static final byte ADD   = 2;
+	static final byte MUL   = 3;
+	static final byte FACT  = 4;
+	static final byte LOAD  = 5;
+
+	private final byte[] ops;
+	private final int[] args;
+	private final Term[] calls;
+	private final int maxDepth;
+	private final AtomicReference<int[]> scratch;
+	// allocated by the first getLongValue()
+	private final AtomicReference<long[]> longScratch = new AtomicReference<>();
+	private volatile int[] starts;
+
+	CompiledTerm(byte[] ops, int[] args, Term[] calls, int maxDepth) {
+		this.ops = ops;
+		this.args = args;
+		this.calls = calls;
+		this.maxDepth = maxDepth;
+		this.scratch = new AtomicReference<>(new int[maxDepth]);
+	}
+
+	public int size() {
+		return ops.length;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public int[] newStack() {
+		return new int[maxDepth];
+	}
+
+	// reuses one stack; a concurrent caller that finds it taken gets its own
+	@Override
+	public int getValue() {
+		int[] stack = scratch.getAndSet(null);
+		if (stack == null) {
+			stack = newStack();
+		}
+		try {
+			return evaluate(stack);
+		}
+		finally {
+			scratch.set(stack);
+		}
+	}
+
+	public int evaluate(int[] stack) {
+		return evaluate(stack, null);
+	}
+
+	// variables[i] is the value of Variable(i)
+	public int evaluate(int[] stack, int[] variables) {
+		if (stack.length < maxDepth) {
+			throw new IllegalArgumentException(String.format("stack too small: %s < %s", stack.length, maxDepth));
+		}
+		return run(0, ops.length, stack, variables);
+	}
+
+	int run(int from, int to, int[] stack) {
+		return run(from, to, stack, null);
+	}
+
+	private int run(int from, int to, int[] stack, int[] variables) {
+		int sp = -1;
+		for (int pc = from; pc < to; pc++) {
+			switch (ops[pc]) {
+			case CONST:
+				stack[++sp] = args[pc];
+				break;
+			case CALL:
+				stack[++sp] = calls[args[pc]].getValue();
+				break;
+			case ADD:
+				sp--;
+				stack[sp] = stack[sp] + stack[sp + 1];
+				break;
+			case MUL:
+				sp--;
+				stack[sp] = stack[sp] * stack[sp + 1];
+				break;
+			case FACT:
+				stack[sp] = Factorials.exact(stack[sp]);
+				break;
+			case LOAD:
+				if (variables == null) {
+					throw new UnsupportedOperationException(String.format("variable %s has no value", args[pc]));
+				}
+				stack[++sp] = variables[args[pc]];
+				break;
+			default:
+				throw new IllegalStateException(String.format("bad opcode %s at %s", ops[pc], pc));
+			}
+		}
+		return stack[sp];
+	}
+
+	// like getValue() but throws ArithmeticException at the first Plus, Times
+	// or Factorial whose result does not fit in an int
+	public int getExactValue() {
+		int[] stack = scratch.getAndSet(null);
+		if (stack == null) {
+			stack = newStack();
+		}
+		try {
+			int sp = -1;
+			for (int pc = 0; pc < ops.length; pc++) {
+				switch (ops[pc]) {
+				case CONST:
+					stack[++sp] = args[pc];
+					break;
+				case ADD:
+					sp--;
+					stack[sp] = addExact(stack[sp], stack[sp + 1]);
+					break;
+				case MUL:
+					sp--;
+					stack[sp] = multiplyExact(stack[sp], stack[sp + 1]);
+					break;
+				case FACT:
+					stack[sp] = Factorials.exact(stack[sp]);
+					break;
+				default:
+					stack[++sp] = leaf(pc);
+				}
+			}
+			return stack[sp];
+		}
+		finally {
+			scratch.set(stack);
+		}
+	}
+
+	// evaluates in 64 bits and throws ArithmeticException at the first node
+	// whose result does not fit in a long
+	public long getLongValue() {
+		long[] stack = longScratch.getAndSet(null);
+		if (stack == null) {
+			stack = new long[maxDepth];
+		}
+		try {
+			int sp = -1;
+			for (int pc = 0; pc < ops.length; pc++) {
+				switch (ops[pc]) {
+				case CONST:
+					stack[++sp] = args[pc];
+					break;
+				case ADD:
+					sp--;
+					stack[sp] = addExact(stack[sp], stack[sp + 1]);
+					break;
+				case MUL:
+					sp--;
+					stack[sp] = multiplyExact(stack[sp], stack[sp + 1]);
+					break;
+				case FACT:
+					stack[sp] = Factorials.longExact(stack[sp]);
+					break;
+				default:
+					stack[++sp] = leaf(pc);
+				}
+			}
+			return stack[sp];
+		}
+		finally {
+			longScratch.set(stack);
+		}
+	}
+
+	// evaluates without any overflow; only a factorial of more than
+	// Integer.MAX_VALUE is refused
+	public BigInteger getBigValue() {
+		BigInteger[] stack = new BigInteger[maxDepth];
+		int sp = -1;
+		for (int pc = 0; pc < ops.length; pc++) {
+			switch (ops[pc]) {
+			case ADD:
+				sp--;
+				stack[sp] = stack[sp].add(stack[sp + 1]);
+				break;
+			case MUL:
+				sp--;
+				stack[sp] = stack[sp].multiply(stack[sp + 1]);
+				break;
+			case FACT:
+				if (stack[sp].bitLength() > 31) {
+					throw new ArithmeticException(String.format("factorial too large: %s!", stack[sp]));
+				}
+				stack[sp] = Factorials.big(stack[sp].intValue());
+				break;
+			default:
+				stack[++sp] = BigInteger.valueOf(leaf(pc));
+			}
+		}
+		return stack[sp];
+	}
+
+	// the value of a CONST, CALL or LOAD instruction
+	private int leaf(int pc) {
+		switch (ops[pc]) {
+		case CONST:
+			return args[pc];
+		case CALL:
+			return calls[args[pc]].getValue();
+		case LOAD:
+			throw new UnsupportedOperationException(String.format("variable %s has no value", args[pc]));
+		default:
+			throw new IllegalStateException(String.format("bad opcode %s at %s", ops[pc], pc));
+		}
+	}
+
+	// Math.addExact and friends, but naming the operands when they overflow
+
+	private static int addExact(int a, int b) {
+		int r = a + b;
+		if (((a ^ r) & (b ^ r)) < 0) {
+			throw new ArithmeticException(String.format("integer overflow: %s + %s", a, b));
+		}
+		return r;
+	}
+
+	private static int multiplyExact(int a, int b) {
+		long r = (long) a * b;
+		if ((int) r != r) {
+			throw new ArithmeticException(String.format("integer overflow: %s * %s", a, b));
+		}
+		return (int) r;
+	}
+
+	private static long addExact(long a, long b) {
+		long r = a + b;
+		if (((a ^ r) & (b ^ r)) < 0) {
+			throw new ArithmeticException(String.format("long overflow: %s + %s", a, b));
+		}
+		return r;
+	}
+
+	private static long multiplyExact(long a, long b) {
+		long r = a * b;
+		if (Math.multiplyHigh(a, b) != (r >> 63)) {
+			throw new ArithmeticException(String.format("long overflow: %s * %s", a, b));
+		}
+		return r;
+	}
+
+	byte op(int pc) {
+		return ops[pc];
+	}
+
+	int arg(int pc) {
+		return args[pc];
+	}
+
+	Term call(int index) {
+		return calls[index];
+	}
+
+	// starts()[pc] is the first instruction of the subtree whose root is the
+	// instruction at pc, so that subtree is the range starts()[pc]..pc
+	int[] starts() {
+		int[] result = starts;
+		if (result == null) {
+			result = new int[ops.length];
+			for (int pc = 0; pc < ops.length; pc++) {
+				switch (ops[pc]) {
+				case ADD:
+				case MUL:
+					result[pc] = result[result[pc - 1] - 1];
+					break;
+				case FACT:
+					result[pc] = result[pc - 1];
+					break;
+				default:
+					result[pc] = pc;
+				}
+			}
+			starts = result;
+		}
+		return result;
+	}
+
+}
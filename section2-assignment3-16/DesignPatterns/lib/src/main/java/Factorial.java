@@ -1,19 +1,28 @@
+import java.math.BigInteger;
 
 public class Factorial extends UnaryOperator{
 	public Factorial(Term one) {
 		super(one);
-		if (one.getValue() < 0) {
-			throw new IllegalArgumentException(String.format("negative value: %s", one.getValue()));
-		}
+		// an operand that depends on a Variable, or whose evaluation throws,
+		// is checked by getValue() when it is evaluated instead
+		FactorialChecks.check(this);
 	}
 	
 	@Override
 	public int getValue() {
-		int fin = 1;
-		for (int i = getTerm().getValue(); i> 0; i--) {
-			fin *= i;
-		}
-		return fin;
+		return Factorials.exact(getTerm().getValue());
+	}
+
+	public int getSaturatedValue() {
+		return Factorials.saturated(getTerm().getValue());
+	}
+
+	public long getLongValue() {
+		return Factorials.longExact(getTerm().getValue());
+	}
+
+	public BigInteger getBigValue() {
+		return Factorials.big(getTerm().getValue());
 	}
 
 }
@@ -0,0 +1,143 @@
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Rejects a negative Factorial operand when the Factorial is built, unless
+// the operand can't be evaluated yet (it depends on a Variable, or something
+// in it throws), in which case getValue() checks it when it is evaluated.
+// The operand is evaluated without recursion and once per shared subtree,
+// and every Factorial built over a composite operand records its own value,
+// so a later check stops there: building a chain of nested factorials costs
+// O(1) per level rather than re-evaluating everything below it.
+final class FactorialChecks {
+	// a Factorial's value, or THROWS if evaluating it would throw
+	private static final WeakIdentityMap<Factorial, Integer> VALUES = new WeakIdentityMap<>();
+	// no factorial is negative
+	private static final int THROWS = -1;
+
+	private FactorialChecks() {
+	}
+
+	static void check(Factorial f) {
+		Term operand = f.getTerm();
+		Integer value = valueOf(operand);
+		if (value != null && value < 0) {
+			throw new IllegalArgumentException(String.format("negative value: %s", value));
+		}
+		if (operand.getClass() != Number.class) {
+			VALUES.put(f, value == null || value > Factorials.MAX_INT ? THROWS : Factorials.exact(value));
+		}
+	}
+
+	// what getValue() would return for root, or null if it would throw
+	private static Integer valueOf(Term root) {
+		int size = arity(root);
+		if (size == 0) {
+			return leaf(root);
+		}
+		boolean leaves = true;
+		for (int i = 0; i < size && leaves; i++) {
+			leaves = arity(operand(root, i)) == 0;
+		}
+		if (leaves) {
+			// the usual shape, such as x! + 1, needs no stack
+			return combine(root, size, null);
+		}
+		Map<Term, Integer> done = new IdentityHashMap<>();
+		ArrayDeque<Term> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Term t = stack.peek();
+			if (done.containsKey(t)) {
+				stack.pop();
+				continue;
+			}
+			int arity = arity(t);
+			boolean ready = true;
+			for (int i = arity - 1; i >= 0; i--) {
+				Term operand = operand(t, i);
+				if (arity(operand) > 0 && !done.containsKey(operand)) {
+					stack.push(operand);
+					ready = false;
+				}
+			}
+			if (!ready) {
+				continue;
+			}
+			stack.pop();
+			done.put(t, arity == 0 ? leaf(t) : combine(t, arity, done));
+		}
+		return done.get(root);
+	}
+
+	// the operands still to evaluate: those of Plus, Times, Sum and Product,
+	// and of a Factorial whose value isn't known yet
+	private static int arity(Term t) {
+		Class<?> type = t.getClass();
+		if (type == Plus.class || type == Times.class) {
+			return 2;
+		}
+		if (type == Sum.class || type == Product.class) {
+			return ((NaryOperator) t).size();
+		}
+		if (type == Factorial.class) {
+			Term operand = ((Factorial) t).getTerm();
+			return operand.getClass() == Number.class || VALUES.get((Factorial) t) != null ? 0 : 1;
+		}
+		return 0;
+	}
+
+	private static Term operand(Term t, int index) {
+		if (t instanceof BinaryOperator) {
+			return index == 0 ? ((BinaryOperator) t).getLeft() : ((BinaryOperator) t).getRight();
+		}
+		if (t instanceof UnaryOperator) {
+			return ((UnaryOperator) t).getTerm();
+		}
+		return ((NaryOperator) t).getTerm(index);
+	}
+
+	private static Integer leaf(Term t) {
+		Class<?> type = t.getClass();
+		if (type == Number.class) {
+			return t.getValue();
+		}
+		if (type == Variable.class) {
+			return null;
+		}
+		if (type == Factorial.class) {
+			Term operand = ((Factorial) t).getTerm();
+			int value = operand.getClass() == Number.class ? factorial(operand.getValue()) : VALUES.get((Factorial) t);
+			return value == THROWS ? null : value;
+		}
+		try {
+			return t.getValue();
+		}
+		catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static Integer combine(Term t, int arity, Map<Term, Integer> done) {
+		Class<?> type = t.getClass();
+		boolean sum = type == Plus.class || type == Sum.class;
+		int value = sum ? 0 : 1;
+		for (int i = 0; i < arity; i++) {
+			Term operand = operand(t, i);
+			Integer v = arity(operand) > 0 ? done.get(operand) : leaf(operand);
+			if (v == null) {
+				return null;
+			}
+			if (type == Factorial.class) {
+				int f = factorial(v);
+				return f == THROWS ? null : f;
+			}
+			value = sum ? value + v : value * v;
+		}
+		return value;
+	}
+
+	private static int factorial(int n) {
+		return n < 0 || n > Factorials.MAX_INT ? THROWS : Factorials.exact(n);
+	}
+}
@@ -0,0 +1,86 @@
+import java.math.BigInteger;
+
+// Factorial lookup tables covering every n whose factorial fits in an int or
+// a long, plus a split-recursive product for BigInteger factorials.
+public final class Factorials {
+	public static final int MAX_INT = 12;
+	public static final int MAX_LONG = 20;
+
+	private static final long[] TABLE = new long[MAX_LONG + 1];
+
+	static {
+		TABLE[0] = 1;
+		for (int i = 1; i <= MAX_LONG; i++) {
+			TABLE[i] = TABLE[i - 1] * i;
+		}
+	}
+
+	private Factorials() {
+	}
+
+	public static int exact(int n) {
+		checkNegative(n);
+		if (n > MAX_INT) {
+			throw new ArithmeticException(String.format("integer overflow: %s!", n));
+		}
+		return (int) TABLE[n];
+	}
+
+	public static int saturated(int n) {
+		checkNegative(n);
+		return n > MAX_INT ? Integer.MAX_VALUE : (int) TABLE[n];
+	}
+
+	public static long longExact(int n) {
+		checkNegative(n);
+		if (n > MAX_LONG) {
+			throw new ArithmeticException(String.format("long overflow: %s!", n));
+		}
+		return TABLE[n];
+	}
+
+	public static long longExact(long n) {
+		if (n < 0) {
+			throw new IllegalArgumentException(String.format("negative value: %s", n));
+		}
+		if (n > MAX_LONG) {
+			throw new ArithmeticException(String.format("long overflow: %s!", n));
+		}
+		return TABLE[(int) n];
+	}
+
+	public static BigInteger big(int n) {
+		checkNegative(n);
+		if (n <= MAX_LONG) {
+			return BigInteger.valueOf(TABLE[n]);
+		}
+		return product(1, n);
+	}
+
+	// multiplies lo..hi by halves so the operands stay balanced and
+	// BigInteger can use its sub-quadratic multiplication on the big ones
+	private static BigInteger product(int lo, int hi) {
+		if (hi - lo < 16) {
+			long acc = lo;
+			BigInteger result = BigInteger.ONE;
+			for (int i = lo + 1; i <= hi; i++) {
+				if (acc > Long.MAX_VALUE / i) {
+					result = result.multiply(BigInteger.valueOf(acc));
+					acc = i;
+				}
+				else {
+					acc *= i;
+				}
+			}
+			return result.multiply(BigInteger.valueOf(acc));
+		}
+		int mid = (lo + hi) >>> 1;
+		return product(lo, mid).multiply(product(mid + 1, hi));
+	}
+
+	private static void checkNegative(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException(String.format("negative value: %s", n));
+		}
+	}
+}
@@ -1,34 +1,116 @@
-import java.util.Iterator;
+import java.math.BigInteger;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 public class Fibonacci implements Iterable<Long>{
 
+	// nextLong() never boxes; the boxed next() from Iterator<Long> still works.
+	// fibonacci(92) is the last term that fits in a long, so the iterator
+	// ends there instead of wrapping around.
 	@Override
-	public Iterator<Long> iterator() {
-		
-		return new Iterator<Long>() {
-			int count = 0;
-			int num1 = 0;
-			int num2 = 1;
-			@Override
-			public boolean hasNext() {
-				return true;
+	public LongIterator iterator() {
+		return new LongIterator();
+	}
+
+	public LongStream stream() {
+		return StreamSupport.longStream(Spliterators.spliterator(iterator(), 92,
+				Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL), false);
+	}
+
+	// fibonacci(n) with fibonacci(0) = 0, so get(n) is the n-th term returned
+	// by the iterator; O(log n)
+	public static long get(long n) {
+		if (n < 0) {
+			throw new IllegalArgumentException(String.format("negative index: %s", n));
+		}
+		if (n > 92) {
+			throw new ArithmeticException(String.format("fibonacci(%d) overflows long", n));
+		}
+		return doubling(n);
+	}
+
+	public static BigInteger getBig(long n) {
+		if (n < 0) {
+			throw new IllegalArgumentException(String.format("negative index: %s", n));
+		}
+		BigInteger a = BigInteger.ZERO;
+		BigInteger b = BigInteger.ONE;
+		for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+			BigInteger c = a.multiply(b.shiftLeft(1).subtract(a));
+			BigInteger d = a.multiply(a).add(b.multiply(b));
+			if ((n >>> bit & 1) == 0) {
+				a = c;
+				b = d;
+			}
+			else {
+				a = d;
+				b = c.add(d);
+			}
+		}
+		return a;
+	}
+
+	// fast doubling: F(2k) = F(k)(2F(k+1) - F(k)), F(2k+1) = F(k)^2 + F(k+1)^2.
+	// Intermediate values may wrap, but the arithmetic is exact mod 2^64, so
+	// the result is right whenever it fits in a long.
+	private static long doubling(long n) {
+		long a = 0;
+		long b = 1;
+		for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+			long c = a * (2 * b - a);
+			long d = a * a + b * b;
+			if ((n >>> bit & 1) == 0) {
+				a = c;
+				b = d;
 			}
+			else {
+				a = d;
+				b = c + d;
+			}
+		}
+		return a;
+	}
 
-			@Override
-			public Long next() {
-				if (count == 0) {
-					count++;
-					return (long)num2;
-				}
-				int num3 = num2 + num1;
-				num1 = num2;
-				num2 = num3;
-				return (long) num3;
-				
+	public static final class LongIterator implements PrimitiveIterator.OfLong {
+		private int count = 0;
+		private long num1 = 0;
+		private long num2 = 1;
+
+		private LongIterator() {
+		}
+
+		@Override
+		public boolean hasNext() {
+			return count < 92;
+		}
+
+		@Override
+		public long nextLong() {
+			if (count >= 92) {
+				throw new NoSuchElementException(String.format("fibonacci(%d) overflows long", count + 1));
 			}
-			
-		};
+			long num3 = num2;
+			num2 = num2 + num1;
+			num1 = num3;
+			count++;
+			return num3;
+		}
 
+		// jumps ahead in O(log n); returns how many terms were actually skipped
+		public long skip(long n) {
+			if (n < 0) {
+				throw new IllegalArgumentException(String.format("negative skip: %s", n));
+			}
+			long skipped = Math.min(n, 92 - count);
+			count += (int) skipped;
+			num1 = doubling(count);
+			num2 = doubling(count + 1);
+			return skipped;
+		}
 	}
 
 }
@@ -0,0 +1,6 @@
+// A Term whose Variables can be bound: evaluate(variables) is its value with
+// Variable(i) standing for variables[i]. getValue() only works when the term
+// has no variables.
+public interface Formula extends Term {
+	int evaluate(int[] variables);
+}
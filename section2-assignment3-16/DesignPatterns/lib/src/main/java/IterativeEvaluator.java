@@ -0,0 +1,151 @@
+import java.util.Arrays;
+
+// Evaluates a Term tree regardless of its depth. A tree is first handed to
+// getValue(), which the JIT inlines far better than any walk that dispatches
+// on the node's class, so shallow trees cost what getValue() costs. Only if
+// that overflows the thread stack is the tree walked here: the first levels
+// recurse, and below MAX_RECURSION the rest of the subtree is walked with
+// explicit heap stacks. Only the exact Number, Plus, Times, Factorial, Sum
+// and Product classes are walked; any other Term is asked for getValue(), so
+// an opaque Term's getValue() may run again after an abandoned first pass.
+public final class IterativeEvaluator {
+	static final int MAX_RECURSION = 256;
+
+	static {
+		// initialized here, so a stack overflow in the first pass can never
+		// strike its static initializer and leave the class unusable
+		Factorials.exact(0);
+	}
+
+	private IterativeEvaluator() {
+	}
+
+	public static int evaluate(Term root) {
+		if (root == null) {
+			throw new IllegalArgumentException("Term cannot be null");
+		}
+		try {
+			return root.getValue();
+		}
+		catch (StackOverflowError e) {
+			// the stack has unwound; walk the tree in bounded stack instead
+			return recurse(root, MAX_RECURSION);
+		}
+	}
+
+	private static int recurse(Term t, int budget) {
+		Class<?> type = t.getClass();
+		if (type == Number.class) {
+			return t.getValue();
+		}
+		if (budget == 0) {
+			return iterate(t);
+		}
+		if (type == Plus.class) {
+			Plus p = (Plus) t;
+			return recurse(p.getLeft(), budget - 1) + recurse(p.getRight(), budget - 1);
+		}
+		if (type == Times.class) {
+			Times m = (Times) t;
+			return recurse(m.getLeft(), budget - 1) * recurse(m.getRight(), budget - 1);
+		}
+		if (type == Factorial.class) {
+			return Factorials.exact(recurse(((Factorial) t).getTerm(), budget - 1));
+		}
+		if (type == Sum.class) {
+			Sum s = (Sum) t;
+			int sum = 0;
+			for (int i = 0; i < s.size(); i++) {
+				sum += recurse(s.getTerm(i), budget - 1);
+			}
+			return sum;
+		}
+		if (type == Product.class) {
+			Product p = (Product) t;
+			int product = 1;
+			for (int i = 0; i < p.size(); i++) {
+				product *= recurse(p.getTerm(i), budget - 1);
+			}
+			return product;
+		}
+		return t.getValue();
+	}
+
+	private static int iterate(Term root) {
+		Term[] pending = new Term[32];
+		boolean[] expanded = new boolean[32];
+		int[] values = new int[32];
+		int top = 0;
+		int sp = -1;
+		pending[0] = root;
+		while (top >= 0) {
+			Term t = pending[top];
+			boolean emit = expanded[top];
+			top--;
+			Class<?> type = t.getClass();
+			if (emit) {
+				if (type == Plus.class) {
+					sp--;
+					values[sp] = values[sp] + values[sp + 1];
+				}
+				else if (type == Times.class) {
+					sp--;
+					values[sp] = values[sp] * values[sp + 1];
+				}
+				else if (type == Factorial.class) {
+					values[sp] = Factorials.exact(values[sp]);
+				}
+				else {
+					// the operands' values are the top size() of the stack
+					int from = sp - ((NaryOperator) t).size() + 1;
+					int value = values[from];
+					for (int i = from + 1; i <= sp; i++) {
+						value = type == Sum.class ? value + values[i] : value * values[i];
+					}
+					sp = from;
+					values[sp] = value;
+				}
+				continue;
+			}
+			if (type == Plus.class || type == Times.class || type == Factorial.class) {
+				if (top + 3 >= pending.length) {
+					pending = Arrays.copyOf(pending, pending.length * 2);
+					expanded = Arrays.copyOf(expanded, expanded.length * 2);
+				}
+				pending[++top] = t;
+				expanded[top] = true;
+				if (type == Factorial.class) {
+					pending[++top] = ((Factorial) t).getTerm();
+					expanded[top] = false;
+				}
+				else {
+					BinaryOperator b = (BinaryOperator) t;
+					pending[++top] = b.getRight();
+					expanded[top] = false;
+					pending[++top] = b.getLeft();
+					expanded[top] = false;
+				}
+				continue;
+			}
+			if (type == Sum.class || type == Product.class) {
+				NaryOperator n = (NaryOperator) t;
+				if (top + n.size() + 2 >= pending.length) {
+					pending = Arrays.copyOf(pending, Math.max(pending.length * 2, top + n.size() + 2));
+					expanded = Arrays.copyOf(expanded, pending.length);
+				}
+				pending[++top] = t;
+				expanded[top] = true;
+				for (int i = n.size() - 1; i >= 0; i--) {
+					pending[++top] = n.getTerm(i);
+					expanded[top] = false;
+				}
+				continue;
+			}
+			if (sp + 1 == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+			values[++sp] = t.getValue();
+		}
+		return values[0];
+	}
+}
@@ -1,5 +1,6 @@
+import java.util.List;
 
-public class LastCity implements Observer{
+public class LastCity implements BatchObserver{
 	private City city;
 	private CensusOffice office;
 	public void update(Observable o) {
@@ -9,6 +10,13 @@ public class LastCity implements Observer{
 			
 		}
 	}
+
+	public void updateAll(Observable o, List<City> cities) {
+		if (o instanceof CensusOffice && !cities.isEmpty()) {
+			office = (CensusOffice) o;
+			city = cities.get(cities.size() - 1);
+		}
+	}
 	
 	public CensusOffice getLastOffice() {
 		return office;
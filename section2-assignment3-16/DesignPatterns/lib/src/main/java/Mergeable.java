@@ -0,0 +1,7 @@
+// An observer whose results can absorb another instance's, so that reports
+// split across threads (see CensusLoader) can be combined afterwards.
+public interface Mergeable<T> {
+	// other's reports count as coming after this one's; other is left as it
+	// was and must not be updated while it is merged
+	void merge(T other);
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// An associative operator over two or more operands, such as the flattened
+// Plus and Times chains TermOptimizer produces.
+public abstract class NaryOperator implements Term {
+	private final Term[] terms;
+	// computed on first use; 0 until then
+	private int hash;
+
+	protected NaryOperator(Term... terms) {
+		if (terms == null) {
+			throw new IllegalArgumentException("Terms cannot be null");
+		}
+		if (terms.length < 2) {
+			throw new IllegalArgumentException(String.format("at least 2 terms required [%s]", terms.length));
+		}
+		for (Term t : terms) {
+			if (t == null) {
+				throw new IllegalArgumentException("Term cannot be null");
+			}
+		}
+		this.terms = terms.clone();
+	}
+
+	public int size() {
+		return terms.length;
+	}
+
+	public Term getTerm(int index) {
+		return terms[index];
+	}
+
+	public List<Term> getTerms() {
+		return Collections.unmodifiableList(Arrays.asList(terms));
+	}
+
+	// structural: same operator class and equal operands in the same order
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || o.getClass() != getClass()) {
+			return false;
+		}
+		int h = hash;
+		int other = ((NaryOperator) o).hash;
+		if (h != 0 && other != 0 && h != other) {
+			return false;
+		}
+		return TermEquality.equal(this, (Term) o);
+	}
+
+	// 31 * class + Arrays.hashCode(terms)
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = TermEquality.hash(this);
+			hash = h;
+		}
+		return h;
+	}
+
+	int cachedHash() {
+		return hash;
+	}
+
+	void cacheHash(int h) {
+		hash = h;
+	}
+}
@@ -11,4 +11,14 @@ public class Number implements Term {
 		return num;
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		return o != null && o.getClass() == getClass() && ((Number) o).num == num;
+	}
+
+	@Override
+	public int hashCode() {
+		return Integer.hashCode(num);
+	}
+
 }
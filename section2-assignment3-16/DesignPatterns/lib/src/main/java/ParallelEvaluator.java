@@ -0,0 +1,110 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Evaluates compiled terms on a ForkJoinPool. Subtrees larger than the
+// threshold are split at their Plus/Times root; smaller ones run on the
+// sequential stack machine. Plus and Times wrap like int arithmetic, which is
+// commutative and associative, so the result matches getValue() exactly.
+public final class ParallelEvaluator {
+	private final ForkJoinPool pool;
+	private final int threshold;
+
+	public ParallelEvaluator() {
+		this(ForkJoinPool.commonPool(), 10_000);
+	}
+
+	public ParallelEvaluator(ForkJoinPool pool, int threshold) {
+		if (pool == null) {
+			throw new IllegalArgumentException("Pool cannot be null");
+		}
+		if (threshold <= 0) {
+			throw new IllegalArgumentException(String.format("threshold must be greater than 0 [%s]", threshold));
+		}
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	public int evaluate(Term term) {
+		return evaluate(term instanceof CompiledTerm ? (CompiledTerm) term : TermCompiler.compile(term));
+	}
+
+	public int evaluate(CompiledTerm program) {
+		return pool.invoke(new Task(program, program.starts(), program.size() - 1, threshold));
+	}
+
+	private static final class Task extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final CompiledTerm program;
+		private final int[] starts;
+		private final int root;
+		private final int threshold;
+
+		private Task(CompiledTerm program, int[] starts, int root, int threshold) {
+			this.program = program;
+			this.starts = starts;
+			this.root = root;
+			this.threshold = threshold;
+		}
+
+		// Walks down the larger child of each big node instead of recursing,
+		// so a left-deep chain costs a loop rather than a chain of joins. The
+		// smaller child is forked if it is big, or evaluated inline if not,
+		// and the pending operations are applied on the way back.
+		@Override
+		protected Integer compute() {
+			byte[] ops = new byte[16];
+			int[] values = new int[16];
+			Task[] forked = new Task[16];
+			int pending = 0;
+			int node = root;
+			int value;
+			while (true) {
+				if (node - starts[node] < threshold) {
+					value = program.run(starts[node], node + 1, program.newStack());
+					break;
+				}
+				if (pending == ops.length) {
+					ops = Arrays.copyOf(ops, pending * 2);
+					values = Arrays.copyOf(values, pending * 2);
+					forked = Arrays.copyOf(forked, pending * 2);
+				}
+				byte op = program.op(node);
+				ops[pending] = op;
+				forked[pending] = null;
+				if (op == CompiledTerm.FACT) {
+					pending++;
+					node = node - 1;
+					continue;
+				}
+				int right = node - 1;
+				int left = starts[right] - 1;
+				int big = right - starts[right] > left - starts[left] ? right : left;
+				int small = big == right ? left : right;
+				if (small - starts[small] < threshold) {
+					values[pending] = program.run(starts[small], small + 1, program.newStack());
+				}
+				else {
+					forked[pending] = new Task(program, starts, small, threshold);
+					forked[pending].fork();
+				}
+				pending++;
+				node = big;
+			}
+			for (int i = pending - 1; i >= 0; i--) {
+				if (ops[i] == CompiledTerm.FACT) {
+					value = Factorials.exact(value);
+					continue;
+				}
+				int other = forked[i] != null ? forked[i].join() : values[i];
+				value = ops[i] == CompiledTerm.ADD ? value + other : value * other;
+			}
+			return value;
+		}
+	}
+}
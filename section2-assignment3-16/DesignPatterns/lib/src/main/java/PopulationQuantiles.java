@@ -0,0 +1,180 @@
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Approximate population quantiles in fixed memory, after DDSketch: every
+// population falls in a bucket of values within a factor gamma of each
+// other, gamma = (1 + a) / (1 - a) for relative accuracy a, and a quantile
+// is estimated from its bucket. Any quantile is then within a relative error
+// of a of the population at that rank (the rank floor(q * (count - 1)) in
+// sorted order), however many cities are reported. Populations only go up to
+// Integer.MAX_VALUE, so the buckets cover that whole range from the start and
+// never collapse: about 1100 of them at the default 1%. Populations below 1
+// share one bucket and are estimated as 0. Buckets are counted with atomic
+// increments, so any number of offices can report at once, and sketches with
+// the same accuracy merge exactly, bucket by bucket.
+public class PopulationQuantiles implements BatchObserver, Mergeable<PopulationQuantiles> {
+	// mantissa bits of the lookup table key
+	private static final int BITS = 7;
+
+	private final double accuracy;
+	private final double gamma;
+	private final double inverseLogGamma;
+	// slot 0 is populations below 1, slot i + 1 is bucket i: (gamma^(i-1), gamma^i]
+	private final AtomicLongArray counts;
+	// Finding a bucket takes a logarithm, so slot() looks it up instead by
+	// the population's exponent and top BITS bits. Such a range is narrower
+	// than a bucket when gamma > 1 + 2^-BITS, so it holds at most one bucket
+	// boundary: the populations up to limits[key] are in slot bases[key],
+	// the rest in the next. limits[key] is -1 where the range holds more
+	// than one boundary (small accuracies), and those take the logarithm.
+	private final int[] bases;
+	private final int[] limits;
+
+	public PopulationQuantiles() {
+		this(0.01);
+	}
+
+	public PopulationQuantiles(double accuracy) {
+		if (!(accuracy > 0 && accuracy < 1)) {
+			throw new IllegalArgumentException(String.format("relative accuracy out of range [%s]", accuracy));
+		}
+		this.accuracy = accuracy;
+		this.gamma = (1 + accuracy) / (1 - accuracy);
+		this.inverseLogGamma = 1 / Math.log(gamma);
+		this.counts = new AtomicLongArray(log(Integer.MAX_VALUE) + 1);
+		int keys = key(Integer.MAX_VALUE) + 1;
+		this.bases = new int[keys];
+		this.limits = new int[keys];
+		for (int key = 1; key < keys; key++) {
+			int shift = Math.max(0, (key >>> BITS) - 1);
+			int lo = (key - (shift << BITS)) << shift;
+			int hi = lo + ((1 << shift) - 1);
+			bases[key] = log(lo);
+			if (log(hi) == bases[key]) {
+				limits[key] = hi;
+			}
+			else if (log(hi) > bases[key] + 1) {
+				limits[key] = -1;
+			}
+			else {
+				// the last population still in the first slot
+				while (lo < hi) {
+					int mid = lo + (hi - lo + 1) / 2;
+					if (log(mid) == bases[key]) {
+						lo = mid;
+					}
+					else {
+						hi = mid - 1;
+					}
+				}
+				limits[key] = lo;
+			}
+		}
+	}
+
+	public double getRelativeAccuracy() {
+		return accuracy;
+	}
+
+	// the fixed number of buckets, which bounds the memory
+	public int getBucketCount() {
+		return counts.length();
+	}
+
+	public void update(Observable o) {
+		if (o instanceof CensusOffice) {
+			add(((CensusOffice) o).getReported().getPopulation());
+		}
+	}
+
+	public void updateAll(Observable o, List<City> cities) {
+		if (o instanceof CensusOffice) {
+			for (City city : cities) {
+				add(city.getPopulation());
+			}
+		}
+	}
+
+	public void add(int population) {
+		counts.getAndIncrement(slot(population));
+	}
+
+	public void merge(PopulationQuantiles other) {
+		if (other == null) {
+			throw new IllegalArgumentException("Observer cannot be null");
+		}
+		if (other.accuracy != accuracy) {
+			throw new IllegalArgumentException(String.format("relative accuracy differs: %s vs %s", other.accuracy, accuracy));
+		}
+		if (other != this) {
+			for (int slot = 0; slot < counts.length(); slot++) {
+				long count = other.counts.get(slot);
+				if (count != 0) {
+					counts.getAndAdd(slot, count);
+				}
+			}
+		}
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (int slot = 0; slot < counts.length(); slot++) {
+			count += counts.get(slot);
+		}
+		return count;
+	}
+
+	// q from 0 (the least) to 1 (the greatest); NaN if nothing was reported
+	public double getQuantile(double q) {
+		if (!(q >= 0 && q <= 1)) {
+			throw new IllegalArgumentException(String.format("quantile out of range [%s]", q));
+		}
+		// copy first so that the count and the walk agree while others report
+		long[] copy = new long[counts.length()];
+		long count = 0;
+		for (int slot = 0; slot < copy.length; slot++) {
+			copy[slot] = counts.get(slot);
+			count += copy[slot];
+		}
+		if (count == 0) {
+			return Double.NaN;
+		}
+		long rank = (long) (q * (count - 1));
+		long seen = 0;
+		int slot = 0;
+		while (true) {
+			seen += copy[slot];
+			if (seen > rank) {
+				break;
+			}
+			slot++;
+		}
+		// the estimate for bucket i is 2 gamma^i / (gamma + 1), which is
+		// within accuracy of both ends of the bucket
+		return slot == 0 ? 0 : 2 * Math.pow(gamma, slot - 1) / (gamma + 1);
+	}
+
+	private int slot(int population) {
+		if (population < 1) {
+			return 0;
+		}
+		int key = key(population);
+		int limit = limits[key];
+		if (limit < 0) {
+			return log(population);
+		}
+		return population <= limit ? bases[key] : bases[key] + 1;
+	}
+
+	// the slot by definition
+	private int log(int population) {
+		return population < 1 ? 0 : 1 + (int) Math.ceil(Math.log(population) * inverseLogGamma);
+	}
+
+	// the top BITS + 1 bits of a positive population, after the number of
+	// bits below them
+	private static int key(int population) {
+		int shift = Math.max(0, 31 - BITS - Integer.numberOfLeadingZeros(population));
+		return (population >>> shift) + (shift << BITS);
+	}
+}
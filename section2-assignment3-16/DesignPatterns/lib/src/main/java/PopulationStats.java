@@ -0,0 +1,264 @@
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Running count, total, min, max and mean population per state and for the
+// whole nation. Every report counts, so a city reported twice counts twice.
+// Reporting threads update one of a fixed set of cells, indexed by state
+// code, picked by a hash of the thread's id; with at least twice as many
+// cells as processors, concurrent offices rarely share one, so an update
+// costs O(1) under a lock that is almost never contended. A cell is also
+// guarded by a sequence number that is odd while it is written, so
+// snapshot() copies each cell as of some point between two of its updates,
+// retrying instead of blocking the writers. Every report is either wholly in
+// a snapshot or wholly out, so its figures always agree with each other.
+public class PopulationStats implements BatchObserver, Mergeable<PopulationStats> {
+	// the least power of two of at least twice the processors
+	private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1);
+
+	private final Cell[] cells = new Cell[STRIPES];
+
+	public PopulationStats() {
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = new Cell();
+		}
+	}
+
+	public void update(Observable o) {
+		if (o instanceof CensusOffice) {
+			City city = ((CensusOffice) o).getReported();
+			Cell cell = cell();
+			synchronized (cell) {
+				cell.open();
+				try {
+					cell.add(city);
+				}
+				finally {
+					cell.close();
+				}
+			}
+		}
+	}
+
+	// one write section for the whole batch
+	public void updateAll(Observable o, List<City> cities) {
+		if (o instanceof CensusOffice) {
+			Cell cell = cell();
+			synchronized (cell) {
+				cell.open();
+				try {
+					for (City city : cities) {
+						cell.add(city);
+					}
+				}
+				finally {
+					cell.close();
+				}
+			}
+		}
+	}
+
+	public void merge(PopulationStats other) {
+		if (other == null) {
+			throw new IllegalArgumentException("Observer cannot be null");
+		}
+		if (other == this) {
+			return;
+		}
+		Snapshot theirs = other.snapshot();
+		Cell cell = cell();
+		synchronized (cell) {
+			cell.open();
+			try {
+				for (int code = 0; code < theirs.states.length; code++) {
+					Summary s = theirs.states[code];
+					if (s != null) {
+						cell.add(code, s.count, s.total, s.min, s.max);
+					}
+				}
+			}
+			finally {
+				cell.close();
+			}
+		}
+	}
+
+	public Snapshot snapshot() {
+		Cell sum = new Cell();
+		for (Cell cell : cells) {
+			Cell copy = cell.copy();
+			for (int code = copy.counts.length - 1; code >= 0; code--) {
+				if (copy.counts[code] > 0) {
+					sum.add(code, copy.counts[code], copy.totals[code], copy.mins[code], copy.maxs[code]);
+				}
+			}
+		}
+		return new Snapshot(sum);
+	}
+
+	// the calling thread's cell; the id is mixed so that consecutive ids
+	// spread over the cells
+	private Cell cell() {
+		long id = Thread.currentThread().getId();
+		return cells[(int) (id * 0x9e3779b97f4a7c15L >>> 32) & (cells.length - 1)];
+	}
+
+	// Written under its own monitor by the threads that map to it, opened
+	// and closed around each write; read by snapshot() on any thread without
+	// locking, which validates what it read against the sequence number.
+	private static final class Cell {
+		private volatile long sequence;
+		private long[] counts = new long[0];
+		private long[] totals = new long[0];
+		private int[] mins = new int[0];
+		private int[] maxs = new int[0];
+
+		private void open() {
+			sequence = sequence + 1;
+			// the writes below must not become visible before the odd number
+			VarHandle.storeStoreFence();
+		}
+
+		private void close() {
+			sequence = sequence + 1;
+		}
+
+		private void add(City city) {
+			int population = city.getPopulation();
+			add(city.getStateCode(), 1, population, population, population);
+		}
+
+		private void add(int code, long count, long total, int min, int max) {
+			if (code >= counts.length) {
+				int length = Math.max(code + 1, StateDictionary.size());
+				counts = Arrays.copyOf(counts, length);
+				totals = Arrays.copyOf(totals, length);
+				mins = Arrays.copyOf(mins, length);
+				maxs = Arrays.copyOf(maxs, length);
+			}
+			if (counts[code] == 0) {
+				mins[code] = min;
+				maxs[code] = max;
+			}
+			else {
+				mins[code] = Math.min(mins[code], min);
+				maxs[code] = Math.max(maxs[code], max);
+			}
+			counts[code] += count;
+			totals[code] += total;
+		}
+
+		// a copy as of some moment between two updates
+		private Cell copy() {
+			Cell copy = new Cell();
+			while (true) {
+				long before = sequence;
+				if ((before & 1) != 0) {
+					Thread.onSpinWait();
+					continue;
+				}
+				copy.counts = counts.clone();
+				copy.totals = totals.clone();
+				copy.mins = mins.clone();
+				copy.maxs = maxs.clone();
+				// the copies must be complete before the number is checked
+				VarHandle.acquireFence();
+				if (sequence == before) {
+					return copy;
+				}
+			}
+		}
+	}
+
+	// The figures of one state, or of the nation. min, max and mean are 0
+	// when the count is.
+	public static final class Summary {
+		private static final Summary EMPTY = new Summary(0, 0, 0, 0);
+
+		private final long count;
+		private final long total;
+		private final int min;
+		private final int max;
+
+		private Summary(long count, long total, int min, int max) {
+			this.count = count;
+			this.total = total;
+			this.min = min;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getTotal() {
+			return total;
+		}
+
+		public int getMin() {
+			return min;
+		}
+
+		public int getMax() {
+			return max;
+		}
+
+		public double getMean() {
+			return count == 0 ? 0 : (double) total / count;
+		}
+
+		@Override
+		public String toString() {
+			return "Summary [count=" + count + ", total=" + total + ", min=" + min + ", max=" + max + "]";
+		}
+	}
+
+	public static final class Snapshot {
+		// index is the state code, null for a state with no reports
+		private final Summary[] states;
+		private final Summary nation;
+
+		private Snapshot(Cell sum) {
+			states = new Summary[sum.counts.length];
+			long count = 0;
+			long total = 0;
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for (int code = 0; code < sum.counts.length; code++) {
+				if (sum.counts[code] > 0) {
+					states[code] = new Summary(sum.counts[code], sum.totals[code], sum.mins[code], sum.maxs[code]);
+					count += sum.counts[code];
+					total += sum.totals[code];
+					min = Math.min(min, sum.mins[code]);
+					max = Math.max(max, sum.maxs[code]);
+				}
+			}
+			nation = count == 0 ? Summary.EMPTY : new Summary(count, total, min, max);
+		}
+
+		public Summary getNation() {
+			return nation;
+		}
+
+		// an empty summary for a state with no reports; null is the cities
+		// with no state
+		public Summary get(String state) {
+			int code = StateDictionary.find(state);
+			return code >= 0 && code < states.length && states[code] != null ? states[code] : Summary.EMPTY;
+		}
+
+		// by state, in the order the states got their codes
+		public Map<String, Summary> getStates() {
+			Map<String, Summary> result = new LinkedHashMap<>();
+			for (int code = 1; code < states.length; code++) {
+				if (states[code] != null) {
+					result.put(StateDictionary.state(code), states[code]);
+				}
+			}
+			return Collections.unmodifiableMap(result);
+		}
+	}
+}
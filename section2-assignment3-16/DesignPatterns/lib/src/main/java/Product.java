@@ -0,0 +1,16 @@
+public class Product extends NaryOperator {
+
+	public Product(Term... terms) {
+		super(terms);
+	}
+
+	@Override
+	public int getValue() {
+		int product = 1;
+		for (int i = 0; i < size(); i++) {
+			product *= getTerm(i).getValue();
+		}
+		return product;
+	}
+
+}
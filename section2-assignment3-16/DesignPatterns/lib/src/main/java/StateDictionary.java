@@ -0,0 +1,64 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Small int codes for state names, shared by every City. Code 0 is the null
+// state and the first state seen gets 1, so per-state data can live in an
+// array indexed by code instead of a map keyed by string. Codes are never
+// reused or released. Lookups are lock-free; assigning a new code takes a
+// lock.
+public final class StateDictionary {
+	private static final ConcurrentMap<String, Integer> CODES = new ConcurrentHashMap<>();
+	private static final Object LOCK = new Object();
+	// index is the code; published copy-on-write
+	private static volatile String[] states = new String[1];
+
+	private StateDictionary() {
+	}
+
+	// the code of the state, assigning the next one if it is new
+	public static int code(String state) {
+		if (state == null) {
+			return 0;
+		}
+		Integer code = CODES.get(state);
+		if (code != null) {
+			return code;
+		}
+		synchronized (LOCK) {
+			code = CODES.get(state);
+			if (code == null) {
+				String[] current = states;
+				String[] next = Arrays.copyOf(current, current.length + 1);
+				next[current.length] = state;
+				states = next;
+				code = current.length;
+				CODES.put(state, code);
+			}
+			return code;
+		}
+	}
+
+	// the code of a state already seen, -1 if it is new
+	public static int find(String state) {
+		if (state == null) {
+			return 0;
+		}
+		Integer code = CODES.get(state);
+		return code != null ? code : -1;
+	}
+
+	// the shared instance of a state's name, null for code 0
+	public static String state(int code) {
+		String[] current = states;
+		if (code < 0 || code >= current.length) {
+			throw new IllegalArgumentException(String.format("unknown state code [%s]", code));
+		}
+		return current[code];
+	}
+
+	// one more than the highest code, the length an array indexed by code needs
+	public static int size() {
+		return states.length;
+	}
+}
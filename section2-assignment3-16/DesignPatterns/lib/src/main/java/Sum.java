@@ -0,0 +1,16 @@
+public class Sum extends NaryOperator {
+
+	public Sum(Term... terms) {
+		super(terms);
+	}
+
+	@Override
+	public int getValue() {
+		int sum = 0;
+		for (int i = 0; i < size(); i++) {
+			sum += getTerm(i).getValue();
+		}
+		return sum;
+	}
+
+}
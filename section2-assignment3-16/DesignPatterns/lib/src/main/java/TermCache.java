@@ -0,0 +1,139 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Bounded evaluation cache for Plus, Times, Factorial, Sum and Product nodes,
+// keyed by node identity. Run trees through a TermInterner first so that equal subtrees are
+// the same node and share one entry. The oldest entry is evicted once the
+// cache is full. Not thread-safe.
+public final class TermCache {
+	private final int capacity;
+	private final Map<Term, Integer> values = new IdentityHashMap<>();
+	private final ArrayDeque<Term> order = new ArrayDeque<>();
+	private long hits;
+	private long misses;
+
+	public TermCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException(String.format("capacity must be greater than 0 [%s]", capacity));
+		}
+		this.capacity = capacity;
+	}
+
+	// walks the uncached part of the tree with explicit stacks, left to
+	// right like getValue(), so deep trees don't use thread stack
+	public int evaluate(Term root) {
+		Term[] pending = new Term[16];
+		boolean[] expanded = new boolean[16];
+		int[] results = new int[16];
+		int top = 0;
+		int out = 0;
+		pending[0] = root;
+		while (top >= 0) {
+			Term t = pending[top];
+			boolean emit = expanded[top];
+			top--;
+			int arity = arity(t);
+			int value;
+			if (emit) {
+				out -= arity;
+				value = combine(t, results, out, arity);
+				if (values.size() == capacity) {
+					values.remove(order.poll());
+				}
+				values.put(t, value);
+				order.add(t);
+			}
+			else if (arity == 0) {
+				value = t.getValue();
+			}
+			else {
+				Integer cached = values.get(t);
+				if (cached == null) {
+					misses++;
+					if (top + arity + 2 >= pending.length) {
+						pending = Arrays.copyOf(pending, Math.max(pending.length * 2, top + arity + 2));
+						expanded = Arrays.copyOf(expanded, pending.length);
+					}
+					if (out + arity >= results.length) {
+						results = Arrays.copyOf(results, Math.max(results.length * 2, out + arity + 1));
+					}
+					pending[++top] = t;
+					expanded[top] = true;
+					for (int i = arity - 1; i >= 0; i--) {
+						pending[++top] = operand(t, i);
+						expanded[top] = false;
+					}
+					continue;
+				}
+				hits++;
+				value = cached;
+			}
+			if (out == results.length) {
+				results = Arrays.copyOf(results, out * 2);
+			}
+			results[out++] = value;
+		}
+		return results[0];
+	}
+
+	// the number of operands of the exact types cached, 0 for the rest
+	private static int arity(Term t) {
+		Class<?> type = t.getClass();
+		if (type == Plus.class || type == Times.class) {
+			return 2;
+		}
+		if (type == Factorial.class) {
+			return 1;
+		}
+		return type == Sum.class || type == Product.class ? ((NaryOperator) t).size() : 0;
+	}
+
+	private static Term operand(Term t, int index) {
+		if (t instanceof BinaryOperator) {
+			return index == 0 ? ((BinaryOperator) t).getLeft() : ((BinaryOperator) t).getRight();
+		}
+		if (t instanceof UnaryOperator) {
+			return ((UnaryOperator) t).getTerm();
+		}
+		return ((NaryOperator) t).getTerm(index);
+	}
+
+	// t's value from its operands' values results[from..from+arity-1]
+	private static int combine(Term t, int[] results, int from, int arity) {
+		Class<?> type = t.getClass();
+		if (type == Factorial.class) {
+			return Factorials.exact(results[from]);
+		}
+		boolean sum = type == Plus.class || type == Sum.class;
+		int value = sum ? 0 : 1;
+		for (int i = from; i < from + arity; i++) {
+			value = sum ? value + results[i] : value * results[i];
+		}
+		return value;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public void clear() {
+		values.clear();
+		order.clear();
+		hits = 0;
+		misses = 0;
+	}
+}
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Compact binary form of a Term: the postfix program of its CompiledTerm,
+// one opcode byte per instruction with CONST operands as zigzag varints and
+// LOAD operands (variable indexes) as plain varints,
+// after a header of magic, version, instruction count and stack depth.
+// Encoded terms can be evaluated straight from a (possibly memory-mapped)
+// buffer without building the tree. Only trees TermCompiler flattens
+// completely can be encoded; Sum and Product decode as Plus and Times chains.
+//
+// Readers never move the buffer's position; they start at it and read with
+// absolute gets, so one mapped buffer can be shared between threads.
+public final class TermCodec {
+	static final int MAGIC = 0x5445524d; // "TERM"
+	static final byte VERSION = 1;
+
+	private TermCodec() {
+	}
+
+	public static int encodedSize(Term term) {
+		return encodedSize(compile(term));
+	}
+
+	// encodes into a new heap buffer, flipped and ready to read
+	public static ByteBuffer encode(Term term) {
+		CompiledTerm program = compile(term);
+		ByteBuffer out = ByteBuffer.allocate(encodedSize(program));
+		write(program, out);
+		return out.flip();
+	}
+
+	// encodes at out's position and advances it; throws
+	// BufferOverflowException if out has too little room
+	public static void encode(Term term, ByteBuffer out) {
+		write(compile(term), out);
+	}
+
+	// encodes straight into a mapped region of the file, replacing its contents
+	public static void write(Term term, Path file) throws IOException {
+		CompiledTerm program = compile(term);
+		int size = encodedSize(program);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(program, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+		}
+	}
+
+	public static MappedByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	public static int evaluate(ByteBuffer in) {
+		Reader reader = new Reader(in);
+		int[] stack = new int[reader.maxDepth];
+		int sp = -1;
+		for (int pc = 0; pc < reader.count; pc++) {
+			byte op = reader.op();
+			switch (op) {
+			case CompiledTerm.CONST:
+				reader.checkPush(sp);
+				stack[++sp] = reader.constant();
+				break;
+			case CompiledTerm.LOAD:
+				throw new UnsupportedOperationException(String.format("variable %s has no value", reader.varint()));
+			case CompiledTerm.ADD:
+				reader.checkPop(sp, 2);
+				sp--;
+				stack[sp] = stack[sp] + stack[sp + 1];
+				break;
+			case CompiledTerm.MUL:
+				reader.checkPop(sp, 2);
+				sp--;
+				stack[sp] = stack[sp] * stack[sp + 1];
+				break;
+			case CompiledTerm.FACT:
+				reader.checkPop(sp, 1);
+				stack[sp] = Factorials.exact(stack[sp]);
+				break;
+			default:
+				throw reader.badOpcode(op);
+			}
+		}
+		reader.checkEnd(sp);
+		return stack[0];
+	}
+
+	// rebuilds the tree on the heap
+	public static Term decode(ByteBuffer in) {
+		Reader reader = new Reader(in);
+		Term[] stack = new Term[reader.maxDepth];
+		int sp = -1;
+		for (int pc = 0; pc < reader.count; pc++) {
+			byte op = reader.op();
+			switch (op) {
+			case CompiledTerm.CONST:
+				reader.checkPush(sp);
+				stack[++sp] = new Number(reader.constant());
+				break;
+			case CompiledTerm.LOAD:
+				reader.checkPush(sp);
+				stack[++sp] = new Variable(reader.index());
+				break;
+			case CompiledTerm.ADD:
+				reader.checkPop(sp, 2);
+				sp--;
+				stack[sp] = new Plus(stack[sp], stack[sp + 1]);
+				break;
+			case CompiledTerm.MUL:
+				reader.checkPop(sp, 2);
+				sp--;
+				stack[sp] = new Times(stack[sp], stack[sp + 1]);
+				break;
+			case CompiledTerm.FACT:
+				reader.checkPop(sp, 1);
+				stack[sp] = new Factorial(stack[sp]);
+				break;
+			default:
+				throw reader.badOpcode(op);
+			}
+		}
+		reader.checkEnd(sp);
+		return stack[0];
+	}
+
+	private static CompiledTerm compile(Term term) {
+		CompiledTerm program = TermCompiler.compile(term);
+		for (int pc = 0; pc < program.size(); pc++) {
+			if (program.op(pc) == CompiledTerm.CALL) {
+				throw new IllegalArgumentException(String.format("cannot encode %s", program.call(program.arg(pc)).getClass()));
+			}
+		}
+		return program;
+	}
+
+	private static int encodedSize(CompiledTerm program) {
+		int size = 4 + 1 + varintSize(program.size()) + varintSize(program.getMaxDepth());
+		for (int pc = 0; pc < program.size(); pc++) {
+			size++;
+			if (program.op(pc) == CompiledTerm.CONST) {
+				size += varintSize(zigzag(program.arg(pc)));
+			}
+			else if (program.op(pc) == CompiledTerm.LOAD) {
+				size += varintSize(program.arg(pc));
+			}
+		}
+		return size;
+	}
+
+	private static void write(CompiledTerm program, ByteBuffer out) {
+		out.putInt(MAGIC);
+		out.put(VERSION);
+		putVarint(out, program.size());
+		putVarint(out, program.getMaxDepth());
+		for (int pc = 0; pc < program.size(); pc++) {
+			byte op = program.op(pc);
+			out.put(op);
+			if (op == CompiledTerm.CONST) {
+				putVarint(out, zigzag(program.arg(pc)));
+			}
+			else if (op == CompiledTerm.LOAD) {
+				putVarint(out, program.arg(pc));
+			}
+		}
+	}
+
+	private static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	private static int varintSize(int n) {
+		int size = 1;
+		while ((n & ~0x7f) != 0) {
+			n >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	private static void putVarint(ByteBuffer out, int n) {
+		while ((n & ~0x7f) != 0) {
+			out.put((byte) (n | 0x80));
+			n >>>= 7;
+		}
+		out.put((byte) n);
+	}
+
+	// absolute-position reader over one encoded term that validates the
+	// header and the program as it goes, since the bytes may come from anywhere
+	private static final class Reader {
+		private final ByteBuffer in;
+		private final int start;
+		private int pos;
+		private final int count;
+		private final int maxDepth;
+
+		private Reader(ByteBuffer in) {
+			if (in == null) {
+				throw new IllegalArgumentException("Buffer cannot be null");
+			}
+			this.in = in;
+			this.start = in.position();
+			this.pos = start;
+			if (in.limit() - pos < 5 || in.getInt(pos) != MAGIC) {
+				throw new IllegalArgumentException("not an encoded term");
+			}
+			if (in.get(pos + 4) != VERSION) {
+				throw new IllegalArgumentException(String.format("unsupported version %s", in.get(pos + 4)));
+			}
+			pos += 5;
+			count = varint();
+			maxDepth = varint();
+			if (count <= 0 || maxDepth <= 0 || maxDepth > count) {
+				throw malformed();
+			}
+			// every instruction takes at least a byte, so this also bounds
+			// the stack allocated for maxDepth
+			if (count > in.limit() - pos) {
+				throw truncated(in.limit());
+			}
+		}
+
+		private byte op() {
+			if (pos >= in.limit()) {
+				throw truncated(pos);
+			}
+			return in.get(pos++);
+		}
+
+		private int constant() {
+			int n = varint();
+			return (n >>> 1) ^ -(n & 1);
+		}
+
+		private int index() {
+			int n = varint();
+			if (n < 0) {
+				throw malformed();
+			}
+			return n;
+		}
+
+		private int varint() {
+			int result = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				if (pos >= in.limit()) {
+					throw truncated(pos);
+				}
+				byte b = in.get(pos++);
+				result |= (b & 0x7f) << shift;
+				if (b >= 0) {
+					return result;
+				}
+			}
+			throw malformed();
+		}
+
+		private void checkPush(int sp) {
+			if (sp + 1 >= maxDepth) {
+				throw malformed();
+			}
+		}
+
+		private void checkPop(int sp, int arity) {
+			if (sp + 1 < arity) {
+				throw malformed();
+			}
+		}
+
+		private void checkEnd(int sp) {
+			if (sp != 0) {
+				throw malformed();
+			}
+		}
+
+		private IllegalArgumentException badOpcode(byte op) {
+			return new IllegalArgumentException(String.format("bad opcode %s at offset %s", op, pos - 1 - start));
+		}
+
+		private IllegalArgumentException malformed() {
+			return new IllegalArgumentException(String.format("malformed term at offset %s", pos - start));
+		}
+
+		private IllegalArgumentException truncated(int at) {
+			return new IllegalArgumentException(String.format("truncated term at offset %s", at - start));
+		}
+	}
+}
@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Compiles a Term tree into a CompiledTerm. Only the exact Number, Variable,
+// Plus, Times, Factorial, Sum and Product classes are flattened; any other Term
+// (including subclasses that may override getValue) is kept as an opaque CALL.
+public final class TermCompiler {
+	private byte[] ops = new byte[16];
+	private int[] args = new int[16];
+	private int size;
+	private final List<Term> calls = new ArrayList<>();
+	private int depth;
+	private int maxDepth;
+
+	private TermCompiler() {
+	}
+
+	public static CompiledTerm compile(Term term) {
+		if (term == null) {
+			throw new IllegalArgumentException("Term cannot be null");
+		}
+		TermCompiler compiler = new TermCompiler();
+		compiler.walk(term);
+		return new CompiledTerm(Arrays.copyOf(compiler.ops, compiler.size), Arrays.copyOf(compiler.args, compiler.size),
+				compiler.calls.toArray(new Term[0]), compiler.maxDepth);
+	}
+
+	// post-order walk with an explicit stack so deep trees can't overflow the
+	// thread stack; a node is pushed once to expand it and once to emit it.
+	// Sum and Product are pushed once to emit after every operand but the
+	// first, so they compile to a chain of binary ADD or MUL instructions.
+	private void walk(Term root) {
+		Term[] pending = new Term[16];
+		boolean[] expanded = new boolean[16];
+		int top = 0;
+		pending[0] = root;
+		while (top >= 0) {
+			Term t = pending[top];
+			boolean emit = expanded[top];
+			top--;
+			Class<?> type = t.getClass();
+			if (type == Number.class) {
+				emit(CompiledTerm.CONST, t.getValue(), 1);
+			}
+			else if (type == Variable.class) {
+				emit(CompiledTerm.LOAD, ((Variable) t).getIndex(), 1);
+			}
+			else if (type == Plus.class || type == Times.class || type == Factorial.class || type == Sum.class
+					|| type == Product.class) {
+				if (emit) {
+					if (type == Factorial.class) {
+						emit(CompiledTerm.FACT, 0, 0);
+					}
+					else {
+						emit(type == Plus.class || type == Sum.class ? CompiledTerm.ADD : CompiledTerm.MUL, 0, -1);
+					}
+					continue;
+				}
+				int arity = type == Factorial.class ? 1 : type == Plus.class || type == Times.class ? 2
+						: ((NaryOperator) t).size();
+				if (top + 2 * arity + 1 >= pending.length) {
+					pending = Arrays.copyOf(pending, Math.max(pending.length * 2, top + 2 * arity + 2));
+					expanded = Arrays.copyOf(expanded, pending.length);
+				}
+				for (int i = arity - 1; i >= 0; i--) {
+					if (i > 0 || arity == 1) {
+						pending[++top] = t;
+						expanded[top] = true;
+					}
+					pending[++top] = operand(t, i);
+					expanded[top] = false;
+				}
+			}
+			else {
+				emit(CompiledTerm.CALL, calls.size(), 1);
+				calls.add(t);
+			}
+		}
+	}
+
+	private static Term operand(Term t, int index) {
+		if (t instanceof BinaryOperator) {
+			return index == 0 ? ((BinaryOperator) t).getLeft() : ((BinaryOperator) t).getRight();
+		}
+		if (t instanceof NaryOperator) {
+			return ((NaryOperator) t).getTerm(index);
+		}
+		return ((UnaryOperator) t).getTerm();
+	}
+
+	private void emit(byte op, int arg, int stackEffect) {
+		if (size == ops.length) {
+			ops = Arrays.copyOf(ops, size * 2);
+			args = Arrays.copyOf(args, size * 2);
+		}
+		ops[size] = op;
+		args[size] = arg;
+		size++;
+		depth += stackEffect;
+		maxDepth = Math.max(maxDepth, depth);
+	}
+}
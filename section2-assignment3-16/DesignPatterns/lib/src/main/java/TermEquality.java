@@ -0,0 +1,170 @@
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Structural equality and hash codes of operator trees without recursion.
+// Both walk the tree with an explicit stack and visit a shared subtree (or a
+// pair of them) once however often it is reached, so DAGs cost their number
+// of distinct nodes rather than their size as trees. NaryOperator keeps its
+// hash code once computed; BinaryOperator and UnaryOperator have no room for
+// it, so theirs come from TermHashes once a TermInterner has recorded them and
+// are recomputed per call otherwise.
+final class TermEquality {
+	private TermEquality() {
+	}
+
+	static boolean equal(Term a, Term b) {
+		ArrayDeque<Term> stack = new ArrayDeque<>();
+		Set<Pair> seen = new HashSet<>();
+		stack.push(a);
+		stack.push(b);
+		while (!stack.isEmpty()) {
+			Term y = stack.pop();
+			Term x = stack.pop();
+			if (x == y) {
+				continue;
+			}
+			if (!isOperator(x) || x.getClass() != y.getClass()) {
+				// leaves and other Terms decide for themselves
+				if (!x.equals(y)) {
+					return false;
+				}
+				continue;
+			}
+			if (!seen.add(new Pair(x, y))) {
+				continue;
+			}
+			if (x instanceof BinaryOperator) {
+				stack.push(((BinaryOperator) x).getRight());
+				stack.push(((BinaryOperator) y).getRight());
+				stack.push(((BinaryOperator) x).getLeft());
+				stack.push(((BinaryOperator) y).getLeft());
+			}
+			else if (x instanceof UnaryOperator) {
+				stack.push(((UnaryOperator) x).getTerm());
+				stack.push(((UnaryOperator) y).getTerm());
+			}
+			else {
+				NaryOperator nx = (NaryOperator) x;
+				NaryOperator ny = (NaryOperator) y;
+				if (nx.size() != ny.size()) {
+					return false;
+				}
+				for (int i = nx.size() - 1; i >= 0; i--) {
+					stack.push(nx.getTerm(i));
+					stack.push(ny.getTerm(i));
+				}
+			}
+		}
+		return true;
+	}
+
+	// the same value the recursive definitions in the operators' comments give
+	static int hash(Term root) {
+		Integer recorded = TermHashes.get(root);
+		if (recorded != null) {
+			return recorded;
+		}
+		Map<Term, Integer> done = new IdentityHashMap<>();
+		ArrayDeque<Term> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Term t = stack.peek();
+			if (done.containsKey(t)) {
+				stack.pop();
+				continue;
+			}
+			boolean ready = true;
+			for (int i = arity(t) - 1; i >= 0; i--) {
+				Term operand = operand(t, i);
+				if (isOperator(operand) && !done.containsKey(operand) && !isCached(operand)) {
+					stack.push(operand);
+					ready = false;
+				}
+			}
+			if (!ready) {
+				continue;
+			}
+			stack.pop();
+			int h;
+			if (t instanceof NaryOperator) {
+				h = 1;
+				for (int i = 0; i < arity(t); i++) {
+					h = 31 * h + hashOf(operand(t, i), done);
+				}
+				h = 31 * t.getClass().hashCode() + h;
+				((NaryOperator) t).cacheHash(h);
+			}
+			else if (t instanceof BinaryOperator) {
+				h = 31 * (31 * t.getClass().hashCode() + hashOf(operand(t, 0), done)) + hashOf(operand(t, 1), done);
+			}
+			else {
+				h = 31 * t.getClass().hashCode() + hashOf(operand(t, 0), done);
+			}
+			done.put(t, h);
+		}
+		return done.get(root);
+	}
+
+	private static int hashOf(Term t, Map<Term, Integer> done) {
+		if (!isOperator(t)) {
+			return t.hashCode();
+		}
+		Integer h = done.get(t);
+		if (h != null) {
+			return h;
+		}
+		return t instanceof NaryOperator ? ((NaryOperator) t).cachedHash() : TermHashes.get(t);
+	}
+
+	private static boolean isCached(Term t) {
+		if (t instanceof NaryOperator) {
+			return ((NaryOperator) t).cachedHash() != 0;
+		}
+		return TermHashes.get(t) != null;
+	}
+
+	private static boolean isOperator(Term t) {
+		return t instanceof BinaryOperator || t instanceof UnaryOperator || t instanceof NaryOperator;
+	}
+
+	private static int arity(Term t) {
+		if (t instanceof BinaryOperator) {
+			return 2;
+		}
+		return t instanceof UnaryOperator ? 1 : ((NaryOperator) t).size();
+	}
+
+	private static Term operand(Term t, int index) {
+		if (t instanceof BinaryOperator) {
+			return index == 0 ? ((BinaryOperator) t).getLeft() : ((BinaryOperator) t).getRight();
+		}
+		if (t instanceof UnaryOperator) {
+			return ((UnaryOperator) t).getTerm();
+		}
+		return ((NaryOperator) t).getTerm(index);
+	}
+
+	// two nodes compared by identity
+	private static final class Pair {
+		private final Term x;
+		private final Term y;
+
+		private Pair(Term x, Term y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Pair && ((Pair) o).x == x && ((Pair) o).y == y;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(x) + System.identityHashCode(y);
+		}
+	}
+}
@@ -0,0 +1,420 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Generates a class per Term whose evaluate method is the whole tree as
+// straight-line bytecode: constants are pushed as immediates, variables are
+// read from the argument array and Plus, Times and Factorial become iadd,
+// imul and a call to Factorials.exact, so after JIT compilation evaluation
+// costs no dispatch at all. Opaque Terms are called through getValue().
+//
+// Classes are hidden classes, which are unloaded once unreachable. They are
+// cached by program, so structurally equal trees share one class; the least
+// recently used one is dropped once the cache is full. On runtimes without
+// hidden classes (before Java 15) nothing is generated, since ordinary
+// classes would stay loaded as long as this class, and every tree is
+// interpreted as a CompiledTerm instead, as is one whose method would be too
+// large for the JIT to compile. Thread-safe.
+public final class TermGenerator {
+	// HotSpot does not compile methods with more bytecode than this
+	static final int MAX_CODE = 8000;
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final Method DEFINE_HIDDEN = defineHidden();
+	private static final MethodType CONSTRUCTOR = MethodType.methodType(void.class, Term[].class, int.class);
+
+	private final Map<Key, MethodHandle> classes;
+	private int generated;
+
+	public TermGenerator() {
+		this(256);
+	}
+
+	public TermGenerator(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException(String.format("capacity must be greater than 0 [%s]", capacity));
+		}
+		this.classes = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, MethodHandle> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	// whether this runtime can define hidden classes, without which
+	// generate() only interprets
+	public static boolean isSupported() {
+		return DEFINE_HIDDEN != null;
+	}
+
+	public Formula generate(Term term) {
+		CompiledTerm program = TermCompiler.compile(term);
+		if (DEFINE_HIDDEN == null) {
+			return new Interpreted(program);
+		}
+		Term[] calls = new Term[program.size()];
+		int calling = 0;
+		int variable = -1;
+		for (int pc = 0; pc < program.size(); pc++) {
+			if (program.op(pc) == CompiledTerm.CALL) {
+				calls[calling++] = program.call(program.arg(pc));
+			}
+			else if (program.op(pc) == CompiledTerm.LOAD && variable < 0) {
+				variable = program.arg(pc);
+			}
+		}
+		MethodHandle constructor;
+		synchronized (classes) {
+			Key key = new Key(program);
+			constructor = classes.get(key);
+			if (constructor == null) {
+				byte[] code = code(program);
+				if (code == null) {
+					return new Interpreted(program);
+				}
+				constructor = define(code);
+				classes.put(key, constructor);
+				generated++;
+			}
+		}
+		try {
+			return (Formula) constructor.invoke(Arrays.copyOf(calls, calling), variable);
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// the number of classes currently cached
+	public int size() {
+		synchronized (classes) {
+			return classes.size();
+		}
+	}
+
+	// the number of classes defined so far, including evicted ones
+	public int getGenerated() {
+		synchronized (classes) {
+			return generated;
+		}
+	}
+
+	// superclass of every generated class; evaluate is generated
+	public abstract static class Base implements Formula {
+		final Term[] calls;
+		private final int variable;
+
+		// variable is the index of the first Variable in the term, or -1
+		protected Base(Term[] calls, int variable) {
+			this.calls = calls;
+			this.variable = variable;
+		}
+
+		@Override
+		public int getValue() {
+			if (variable >= 0) {
+				throw new UnsupportedOperationException(String.format("variable %s has no value", variable));
+			}
+			return evaluate(null);
+		}
+	}
+
+	private static final class Interpreted implements Formula {
+		private final CompiledTerm program;
+
+		private Interpreted(CompiledTerm program) {
+			this.program = program;
+		}
+
+		@Override
+		public int getValue() {
+			return program.getValue();
+		}
+
+		@Override
+		public int evaluate(int[] variables) {
+			return program.evaluate(program.newStack(), variables);
+		}
+	}
+
+	// the body of evaluate(int[]), or null if it would be longer than MAX_CODE
+	private static byte[] code(CompiledTerm program) {
+		ClassWriter pool = new ClassWriter();
+		Bytes code = new Bytes();
+		int calling = 0;
+		for (int pc = 0; pc < program.size(); pc++) {
+			switch (program.op(pc)) {
+			case CompiledTerm.CONST:
+				push(code, pool, program.arg(pc));
+				break;
+			case CompiledTerm.LOAD:
+				code.u1(0x2b); // aload_1
+				push(code, pool, program.arg(pc));
+				code.u1(0x2e); // iaload
+				break;
+			case CompiledTerm.CALL:
+				code.u1(0x2a); // aload_0
+				code.u1(0xb4).u2(ClassWriter.CALLS); // getfield calls
+				push(code, pool, calling++);
+				code.u1(0x32); // aaload
+				code.u1(0xb9).u2(ClassWriter.GET_VALUE).u1(1).u1(0); // invokeinterface Term.getValue
+				break;
+			case CompiledTerm.ADD:
+				code.u1(0x60); // iadd
+				break;
+			case CompiledTerm.MUL:
+				code.u1(0x68); // imul
+				break;
+			case CompiledTerm.FACT:
+				code.u1(0xb8).u2(ClassWriter.EXACT); // invokestatic Factorials.exact
+				break;
+			default:
+				throw new IllegalStateException(String.format("bad opcode %s at %s", program.op(pc), pc));
+			}
+			if (code.size() >= MAX_CODE) {
+				return null;
+			}
+		}
+		code.u1(0xac); // ireturn
+		// operands plus at most two slots for an array and index being loaded
+		return pool.finish(code.toArray(), program.getMaxDepth() + 2);
+	}
+
+	private static void push(Bytes code, ClassWriter pool, int value) {
+		if (value >= -1 && value <= 5) {
+			code.u1(0x03 + value); // iconst_<value>
+		}
+		else if (value == (byte) value) {
+			code.u1(0x10).u1(value); // bipush
+		}
+		else if (value == (short) value) {
+			code.u1(0x11).u2(value); // sipush
+		}
+		else {
+			int index = pool.integer(value);
+			if (index < 256) {
+				code.u1(0x12).u1(index); // ldc
+			}
+			else {
+				code.u1(0x13).u2(index); // ldc_w
+			}
+		}
+	}
+
+	private static MethodHandle define(byte[] classFile) {
+		try {
+			Object options = Array.newInstance(DEFINE_HIDDEN.getParameterTypes()[2].getComponentType(), 0);
+			MethodHandles.Lookup lookup = (MethodHandles.Lookup) DEFINE_HIDDEN.invoke(LOOKUP, classFile, true, options);
+			return lookup.findConstructor(lookup.lookupClass(), CONSTRUCTOR);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Method defineHidden() {
+		try {
+			Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			return MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class,
+					Array.newInstance(option, 0).getClass());
+		}
+		catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static final class Key {
+		private final byte[] ops;
+		private final int[] args;
+
+		private Key(CompiledTerm program) {
+			ops = new byte[program.size()];
+			args = new int[program.size()];
+			for (int pc = 0; pc < ops.length; pc++) {
+				ops[pc] = program.op(pc);
+				// opaque terms are passed to the constructor, not baked in
+				args[pc] = ops[pc] == CompiledTerm.CALL ? 0 : program.arg(pc);
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(ops, ((Key) o).ops) && Arrays.equals(args, ((Key) o).args);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Arrays.hashCode(ops) + Arrays.hashCode(args);
+		}
+	}
+
+	private static final class Bytes {
+		private byte[] bytes = new byte[64];
+		private int size;
+
+		private Bytes u1(int value) {
+			if (size == bytes.length) {
+				bytes = Arrays.copyOf(bytes, size * 2);
+			}
+			bytes[size++] = (byte) value;
+			return this;
+		}
+
+		private Bytes u2(int value) {
+			return u1(value >>> 8).u1(value);
+		}
+
+		private Bytes u4(int value) {
+			return u2(value >>> 16).u2(value);
+		}
+
+		private Bytes utf8(String value) {
+			byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+			u2(encoded.length);
+			for (byte b : encoded) {
+				u1(b);
+			}
+			return this;
+		}
+
+		private Bytes bytes(byte[] value) {
+			for (byte b : value) {
+				u1(b);
+			}
+			return this;
+		}
+
+		private int size() {
+			return size;
+		}
+
+		private byte[] toArray() {
+			return Arrays.copyOf(bytes, size);
+		}
+	}
+
+	// writes the class file around a generated evaluate body. The fixed part
+	// of the constant pool comes first so its indexes are constants; integer
+	// constants too large for sipush are appended as the body asks for them.
+	private static final class ClassWriter {
+		private static final String NAME = "TermGenerator$Generated";
+		private static final String BASE = "TermGenerator$Base";
+
+		private static final int THIS = 2;
+		private static final int SUPER = 4;
+		private static final int INIT = 5;
+		private static final int INIT_TYPE = 6;
+		private static final int SUPER_INIT = 8;
+		private static final int CODE = 9;
+		private static final int EVALUATE = 10;
+		private static final int EVALUATE_TYPE = 11;
+		static final int CALLS = 15;
+		static final int GET_VALUE = 21;
+		static final int EXACT = 27;
+
+		private final Bytes pool = new Bytes();
+		private int entries;
+		private final Map<Integer, Integer> integers = new HashMap<>();
+
+		private ClassWriter() {
+			// hidden classes get a unique suffix, so every class can have this name
+			utf8(NAME);                       // 1
+			classRef(1);                      // 2 THIS
+			utf8(BASE);                       // 3
+			classRef(3);                      // 4 SUPER
+			utf8("<init>");                   // 5 INIT
+			utf8("([LTerm;I)V");              // 6 INIT_TYPE
+			nameAndType(INIT, INIT_TYPE);     // 7
+			ref(10, SUPER, 7);                // 8 SUPER_INIT
+			utf8("Code");                     // 9 CODE
+			utf8("evaluate");                 // 10 EVALUATE
+			utf8("([I)I");                    // 11 EVALUATE_TYPE
+			utf8("calls");                    // 12
+			utf8("[LTerm;");                  // 13
+			nameAndType(12, 13);              // 14
+			ref(9, SUPER, 14);                // 15 CALLS
+			utf8("Term");                     // 16
+			classRef(16);                     // 17
+			utf8("getValue");                 // 18
+			utf8("()I");                      // 19
+			nameAndType(18, 19);              // 20
+			ref(11, 17, 20);                  // 21 GET_VALUE
+			utf8("Factorials");               // 22
+			classRef(22);                     // 23
+			utf8("exact");                    // 24
+			utf8("(I)I");                     // 25
+			nameAndType(24, 25);              // 26
+			ref(10, 23, 26);                  // 27 EXACT
+		}
+
+		private int integer(int value) {
+			Integer index = integers.get(value);
+			if (index == null) {
+				pool.u1(3).u4(value);
+				index = ++entries;
+				integers.put(value, index);
+			}
+			return index;
+		}
+
+		private void utf8(String value) {
+			pool.u1(1).utf8(value);
+			entries++;
+		}
+
+		private void classRef(int name) {
+			pool.u1(7).u2(name);
+			entries++;
+		}
+
+		private void nameAndType(int name, int type) {
+			pool.u1(12).u2(name).u2(type);
+			entries++;
+		}
+
+		private void ref(int tag, int owner, int nameAndType) {
+			pool.u1(tag).u2(owner).u2(nameAndType);
+			entries++;
+		}
+
+		private byte[] finish(byte[] code, int maxStack) {
+			Bytes out = new Bytes();
+			out.u4(0xcafebabe).u2(0).u2(55); // Java 11 class file, no stack maps needed without branches
+			out.u2(entries + 1).bytes(pool.toArray());
+			out.u2(0x0030).u2(THIS).u2(SUPER); // final super
+			out.u2(0); // interfaces
+			out.u2(0); // fields
+			out.u2(2); // methods
+
+			// public <init>(Term[] calls, int variable) { super(calls, variable); }
+			out.u2(0x0001).u2(INIT).u2(INIT_TYPE).u2(1);
+			out.u2(CODE).u4(12 + 7).u2(3).u2(3).u4(7);
+			out.u1(0x2a).u1(0x2b).u1(0x1c); // aload_0, aload_1, iload_2
+			out.u1(0xb7).u2(SUPER_INIT); // invokespecial
+			out.u1(0xb1); // return
+			out.u2(0).u2(0); // exception table, attributes
+
+			// public int evaluate(int[] variables)
+			out.u2(0x0001).u2(EVALUATE).u2(EVALUATE_TYPE).u2(1);
+			out.u2(CODE).u4(12 + code.length).u2(maxStack).u2(2).u4(code.length);
+			out.bytes(code);
+			out.u2(0).u2(0);
+
+			out.u2(0); // class attributes
+			return out.toArray();
+		}
+	}
+}
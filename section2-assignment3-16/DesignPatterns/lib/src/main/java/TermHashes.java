@@ -0,0 +1,19 @@
+// Structural hash codes of BinaryOperator and UnaryOperator nodes, which have
+// no field of their own to keep one in. TermInterner records one per
+// canonical node, so interned trees hash in O(1) however large they are.
+// Nodes are held weakly and compared by identity, so a node that is no longer
+// reachable drops out. Thread-safe.
+final class TermHashes {
+	private static final WeakIdentityMap<Term, Integer> HASHES = new WeakIdentityMap<>();
+
+	private TermHashes() {
+	}
+
+	static Integer get(Term t) {
+		return HASHES.get(t);
+	}
+
+	static void put(Term t, int hash) {
+		HASHES.put(t, hash);
+	}
+}
@@ -0,0 +1,231 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Hash-consing for Term trees: structurally equal subtrees built or interned
+// through the same interner are the same object. Children of a canonical node
+// are canonical, so lookups compare children by identity and cost O(1) per
+// node no matter how large the subtrees are. A canonical operator's hash code
+// is computed once, from its children's, when it enters the table, so hashing
+// an interned tree costs O(1) too. Number, Variable, Plus, Times, Factorial,
+// Sum and Product are interned; other Terms are kept as they are. Not
+// thread-safe.
+public final class TermInterner {
+	private final Map<Key, Term> table = new HashMap<>();
+
+	public int size() {
+		return table.size();
+	}
+
+	public Term number(int value) {
+		return table.computeIfAbsent(new Key(Number.class, value), k -> new Number(value));
+	}
+
+	public Term variable(int index) {
+		return table.computeIfAbsent(new Key(Variable.class, index), k -> new Variable(index));
+	}
+
+	// the factory methods expect canonical operands; anything else still
+	// works but won't be shared
+	public Term plus(Term left, Term right) {
+		return table.computeIfAbsent(new Key(Plus.class, 0, left, right), k -> hashed(new Plus(left, right)));
+	}
+
+	public Term times(Term left, Term right) {
+		return table.computeIfAbsent(new Key(Times.class, 0, left, right), k -> hashed(new Times(left, right)));
+	}
+
+	public Term factorial(Term term) {
+		return table.computeIfAbsent(new Key(Factorial.class, 0, term), k -> hashed(new Factorial(term)));
+	}
+
+	public Term sum(Term... terms) {
+		Term[] operands = copy(terms);
+		return table.computeIfAbsent(new Key(Sum.class, 0, operands), k -> hashed(new Sum(operands)));
+	}
+
+	public Term product(Term... terms) {
+		Term[] operands = copy(terms);
+		return table.computeIfAbsent(new Key(Product.class, 0, operands), k -> hashed(new Product(operands)));
+	}
+
+	// records t's hash code as it becomes canonical; its children already
+	// have theirs, so this is O(1) per node. A node that isn't canonical
+	// (an operand wasn't) is left to hash itself.
+	private static Term hashed(Term t) {
+		if (t instanceof BinaryOperator || t instanceof UnaryOperator) {
+			TermHashes.put(t, TermEquality.hash(t));
+		}
+		else {
+			t.hashCode();
+		}
+		return t;
+	}
+
+	private static Term[] copy(Term[] terms) {
+		if (terms == null) {
+			throw new IllegalArgumentException("Terms cannot be null");
+		}
+		return terms.clone();
+	}
+
+	// canonicalizes a whole tree bottom-up; nodes whose children were already
+	// canonical are kept rather than copied
+	public Term intern(Term root) {
+		if (root == null) {
+			throw new IllegalArgumentException("Term cannot be null");
+		}
+		Map<Term, Term> done = new IdentityHashMap<>();
+		Term[] pending = new Term[16];
+		boolean[] expanded = new boolean[16];
+		Term[] results = new Term[16];
+		int top = 0;
+		int out = 0;
+		pending[0] = root;
+		while (top >= 0) {
+			Term t = pending[top];
+			boolean emit = expanded[top];
+			top--;
+			Term canonical = done.get(t);
+			if (canonical == null && (emit || !isComposite(t))) {
+				canonical = canonical(t, results, out);
+				out -= arity(t);
+				done.put(t, canonical);
+			}
+			if (canonical != null) {
+				if (out == results.length) {
+					results = Arrays.copyOf(results, out * 2);
+				}
+				results[out++] = canonical;
+				continue;
+			}
+			int arity = arity(t);
+			if (top + arity + 2 >= pending.length) {
+				pending = Arrays.copyOf(pending, Math.max(pending.length * 2, top + arity + 2));
+				expanded = Arrays.copyOf(expanded, pending.length);
+			}
+			if (out + arity >= results.length) {
+				results = Arrays.copyOf(results, Math.max(results.length * 2, out + arity + 1));
+			}
+			pending[++top] = t;
+			expanded[top] = true;
+			for (int i = arity - 1; i >= 0; i--) {
+				pending[++top] = operand(t, i);
+				expanded[top] = false;
+			}
+		}
+		return results[0];
+	}
+
+	private static boolean isComposite(Term t) {
+		return arity(t) > 0;
+	}
+
+	// the number of operands of the exact types interned, 0 for the rest
+	private static int arity(Term t) {
+		Class<?> type = t.getClass();
+		if (type == Plus.class || type == Times.class) {
+			return 2;
+		}
+		if (type == Factorial.class) {
+			return 1;
+		}
+		return type == Sum.class || type == Product.class ? ((NaryOperator) t).size() : 0;
+	}
+
+	private static Term operand(Term t, int index) {
+		if (t instanceof BinaryOperator) {
+			return index == 0 ? ((BinaryOperator) t).getLeft() : ((BinaryOperator) t).getRight();
+		}
+		if (t instanceof UnaryOperator) {
+			return ((UnaryOperator) t).getTerm();
+		}
+		return ((NaryOperator) t).getTerm(index);
+	}
+
+	private Term canonical(Term t, Term[] results, int out) {
+		Class<?> type = t.getClass();
+		if (type == Number.class) {
+			return table.computeIfAbsent(new Key(Number.class, t.getValue()), k -> t);
+		}
+		if (type == Variable.class) {
+			return table.computeIfAbsent(new Key(Variable.class, ((Variable) t).getIndex()), k -> t);
+		}
+		if (type == Factorial.class) {
+			Term child = results[out - 1];
+			return table.computeIfAbsent(new Key(Factorial.class, 0, child),
+					k -> hashed(child == ((Factorial) t).getTerm() ? t : new Factorial(child)));
+		}
+		if (type == Plus.class || type == Times.class) {
+			Term left = results[out - 2];
+			Term right = results[out - 1];
+			BinaryOperator b = (BinaryOperator) t;
+			return table.computeIfAbsent(new Key(type, 0, left, right), k -> {
+				if (left == b.getLeft() && right == b.getRight()) {
+					return hashed(t);
+				}
+				return hashed(type == Plus.class ? new Plus(left, right) : new Times(left, right));
+			});
+		}
+		if (type == Sum.class || type == Product.class) {
+			NaryOperator n = (NaryOperator) t;
+			Term[] operands = Arrays.copyOfRange(results, out - n.size(), out);
+			return table.computeIfAbsent(new Key(type, 0, operands), k -> {
+				for (int i = 0; i < operands.length; i++) {
+					if (operands[i] != n.getTerm(i)) {
+						return hashed(type == Sum.class ? new Sum(operands) : new Product(operands));
+					}
+				}
+				return hashed(t);
+			});
+		}
+		return t;
+	}
+
+	// a node by its type, its leaf value (a Number's value or a Variable's
+	// index) and its operands by identity
+	private static final class Key {
+		private static final Term[] NONE = new Term[0];
+
+		private final Class<?> type;
+		private final int value;
+		private final Term[] operands;
+
+		private Key(Class<?> type, int value, Term... operands) {
+			this.type = type;
+			this.value = value;
+			this.operands = operands;
+		}
+
+		private Key(Class<?> type, int value) {
+			this(type, value, NONE);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			if (type != other.type || value != other.value || operands.length != other.operands.length) {
+				return false;
+			}
+			for (int i = 0; i < operands.length; i++) {
+				if (operands[i] != other.operands[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = 31 * type.hashCode() + value;
+			for (Term t : operands) {
+				h = 31 * h + System.identityHashCode(t);
+			}
+			return h;
+		}
+	}
+}
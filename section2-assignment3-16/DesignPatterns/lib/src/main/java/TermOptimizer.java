@@ -0,0 +1,277 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Rewrites a Term into a smaller tree with the same value:
+// - constant subtrees fold into a single Number, except a Factorial that
+//   would overflow or whose operand folds to a negative number,
+// - x + 0 and x * 1 become x, and x * 0 becomes 0 when x cannot throw,
+// - nested Plus/Sum and Times/Product chains flatten into one Sum or Product
+//   whose constants are folded into a single trailing Number.
+// Only the exact Number, Plus, Times, Factorial, Sum and Product classes are
+// rewritten; any other Term is opaque and kept as it is. An unfolded Factorial
+// keeps throwing when evaluated, and a product with a zero constant keeps its
+// other operands unless each of them is a Number or a Factorial of 0..12.
+// Arithmetic wraps like getValue() does, so folding never changes a result. A subtree reached through more than one parent is rewritten once
+// and its result is shared the same way, so a DAG such as the ones
+// TermInterner builds stays linear in its number of distinct nodes.
+public final class TermOptimizer {
+	private TermOptimizer() {
+	}
+
+	public static Term optimize(Term root) {
+		if (root == null) {
+			throw new IllegalArgumentException("Term cannot be null");
+		}
+		Map<Term, Term> shared = shared(root);
+		Term[] pending = new Term[16];
+		int[] arities = new int[16];
+		// optimized operands, each a Term or a Flat still being built
+		Object[] results = new Object[16];
+		List<Term> operands = new ArrayList<>();
+		int top = 0;
+		int out = 0;
+		pending[0] = root;
+		arities[0] = -1;
+		while (top >= 0) {
+			Term t = pending[top];
+			int arity = arities[top];
+			top--;
+			if (arity >= 0) {
+				// t was expanded and its optimized operands are on results
+				Object result = rewrite(t, results, out - arity, arity);
+				out -= arity;
+				if (shared.containsKey(t)) {
+					// closed so no parent takes over or extends its operands
+					Term closed = close(result);
+					shared.put(t, closed);
+					result = closed;
+				}
+				results[out++] = result;
+				continue;
+			}
+			Term done = shared.get(t);
+			if (done != null) {
+				if (out == results.length) {
+					results = Arrays.copyOf(results, out * 2);
+				}
+				results[out++] = done;
+				continue;
+			}
+			operands(t, operands, shared);
+			arity = operands.size();
+			if (arity == 0) {
+				if (out == results.length) {
+					results = Arrays.copyOf(results, out * 2);
+				}
+				results[out++] = t;
+				continue;
+			}
+			if (top + arity + 2 >= pending.length) {
+				pending = Arrays.copyOf(pending, Math.max(pending.length * 2, top + arity + 2));
+				arities = Arrays.copyOf(arities, pending.length);
+			}
+			if (out + arity >= results.length) {
+				results = Arrays.copyOf(results, Math.max(results.length * 2, out + arity + 1));
+			}
+			pending[++top] = t;
+			arities[top] = arity;
+			for (int i = arity - 1; i >= 0; i--) {
+				pending[++top] = operands.get(i);
+				arities[top] = -1;
+			}
+		}
+		return close(results[0]);
+	}
+
+	// maps every node the optimizer descends into that has more than one
+	// parent to null, its optimized form once it has been rewritten
+	private static Map<Term, Term> shared(Term root) {
+		Map<Term, Boolean> seen = new IdentityHashMap<>();
+		Map<Term, Term> shared = new IdentityHashMap<>();
+		ArrayDeque<Term> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Term t = stack.pop();
+			if (seen.put(t, Boolean.TRUE) != null) {
+				shared.put(t, null);
+				continue;
+			}
+			Class<?> type = t.getClass();
+			if (type == Factorial.class) {
+				stack.push(((Factorial) t).getTerm());
+			}
+			else if (type == Plus.class || type == Times.class) {
+				stack.push(((BinaryOperator) t).getRight());
+				stack.push(((BinaryOperator) t).getLeft());
+			}
+			else if (type == Sum.class || type == Product.class) {
+				NaryOperator nary = (NaryOperator) t;
+				for (int i = nary.size() - 1; i >= 0; i--) {
+					stack.push(nary.getTerm(i));
+				}
+			}
+		}
+		return shared;
+	}
+
+	// collects the operands to optimize before t itself, left to right. A
+	// whole Plus/Sum or Times/Product cluster is gathered in one go, so a
+	// chain is flattened once instead of once per level; a shared node is
+	// left as an operand so it is rewritten on its own, only once.
+	private static void operands(Term t, List<Term> operands, Map<Term, Term> shared) {
+		operands.clear();
+		Class<?> type = t.getClass();
+		if (type == Factorial.class) {
+			operands.add(((Factorial) t).getTerm());
+			return;
+		}
+		boolean sum = type == Plus.class || type == Sum.class;
+		if (!sum && type != Times.class && type != Product.class) {
+			return;
+		}
+		ArrayDeque<Term> stack = new ArrayDeque<>();
+		stack.push(t);
+		while (!stack.isEmpty()) {
+			Term next = stack.pop();
+			Class<?> nextType = next.getClass();
+			if (next != t && shared.containsKey(next)) {
+				operands.add(next);
+			}
+			else if (sum ? nextType == Plus.class || nextType == Sum.class : nextType == Times.class || nextType == Product.class) {
+				if (next instanceof BinaryOperator) {
+					stack.push(((BinaryOperator) next).getRight());
+					stack.push(((BinaryOperator) next).getLeft());
+				}
+				else {
+					NaryOperator nary = (NaryOperator) next;
+					for (int i = nary.size() - 1; i >= 0; i--) {
+						stack.push(nary.getTerm(i));
+					}
+				}
+			}
+			else {
+				operands.add(next);
+			}
+		}
+	}
+
+	// builds the replacement for t from its optimized operands
+	// results[from..from+arity-1]. Sums and products stay open as Flat until
+	// something other than the same operator consumes them, and a parent
+	// takes over its first operand's list, so left-deep chains whose levels
+	// are separated by x * 1 or x + 0 are still flattened in linear time.
+	private static Object rewrite(Term t, Object[] results, int from, int arity) {
+		Class<?> type = t.getClass();
+		if (type == Factorial.class) {
+			Term operand = close(results[from]);
+			if (operand.getClass() == Number.class) {
+				if (operand.getValue() < 0) {
+					// a negative literal cannot be a Factorial operand; keep the
+					// original so it throws when evaluated
+					return t;
+				}
+				try {
+					return new Number(Factorials.exact(operand.getValue()));
+				}
+				catch (ArithmeticException e) {
+					// leave it to throw when evaluated
+				}
+			}
+			return operand == ((Factorial) t).getTerm() ? t : new Factorial(operand);
+		}
+		boolean sum = type == Plus.class || type == Sum.class;
+		List<Object> operands = null;
+		int[] open = null;
+		int opened = 0;
+		int constant = sum ? 0 : 1;
+		for (int i = from; i < from + arity; i++) {
+			Object operand = results[i];
+			if (operand instanceof Flat && ((Flat) operand).sum == sum) {
+				Flat nested = (Flat) operand;
+				constant = sum ? constant + nested.constant : constant * nested.constant;
+				if (operands == null) {
+					operands = nested.operands;
+				}
+				else {
+					operands.addAll(nested.operands);
+				}
+				continue;
+			}
+			if (operand.getClass() == Number.class) {
+				int value = ((Number) operand).getValue();
+				constant = sum ? constant + value : constant * value;
+				continue;
+			}
+			if (operands == null) {
+				operands = new ArrayList<>(arity);
+			}
+			if (operand instanceof Flat) {
+				// the other operator; closed below unless it ends up alone
+				if (open == null) {
+					open = new int[arity];
+				}
+				open[opened++] = operands.size();
+			}
+			operands.add(operand);
+		}
+		if (operands == null || !sum && constant == 0 && cannotThrow(operands)) {
+			return new Number(constant);
+		}
+		if (operands.size() == 1 && constant == (sum ? 0 : 1)) {
+			return operands.get(0);
+		}
+		for (int i = 0; i < opened; i++) {
+			operands.set(open[i], close(operands.get(open[i])));
+		}
+		return new Flat(sum, operands, constant);
+	}
+
+	// whether dropping these operands from a product with a zero constant
+	// leaves no exception unthrown
+	private static boolean cannotThrow(List<Object> operands) {
+		for (Object operand : operands) {
+			Class<?> type = operand.getClass();
+			if (type == Factorial.class) {
+				Term term = ((Factorial) operand).getTerm();
+				if (term.getClass() != Number.class || term.getValue() < 0 || term.getValue() > Factorials.MAX_INT) {
+					return false;
+				}
+			}
+			else if (type != Number.class) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Term close(Object t) {
+		if (!(t instanceof Flat)) {
+			return (Term) t;
+		}
+		Flat flat = (Flat) t;
+		if (flat.constant != (flat.sum ? 0 : 1)) {
+			flat.operands.add(new Number(flat.constant));
+		}
+		Term[] terms = flat.operands.toArray(new Term[0]);
+		return flat.sum ? new Sum(terms) : new Product(terms);
+	}
+
+	// a Sum or Product still being built: its non-constant operands in order,
+	// all of them Terms by the time it is closed, and their folded constant.
+	// Never escapes optimize().
+	private static final class Flat {
+		private final boolean sum;
+		private final List<Object> operands;
+		private final int constant;
+
+		private Flat(boolean sum, List<Object> operands, int constant) {
+			this.sum = sum;
+			this.operands = operands;
+			this.constant = constant;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Parses text such as "(1 + -2) * 3! + 4" into a Term tree. Binary + and *
+// are left-associative with * binding tighter, ! is postfix and binds
+// tightest, and - is only allowed directly in front of an integer literal.
+// Operator-precedence parsing with explicit operand and operator stacks, so
+// neither long chains nor deeply nested parentheses use thread stack, and
+// the input is read one char at a time without creating token strings.
+// The value of every operand is kept beside it, so ! checks its operand in
+// O(1) instead of evaluating the subtree.
+public final class TermParser {
+	private static final byte OPEN  = 0;
+	private static final byte PLUS  = 1;
+	private static final byte TIMES = 2;
+
+	private final CharSequence input;
+	private Term[] operands = new Term[16];
+	private int operandCount;
+	// the value of each operand, or why evaluating it throws
+	private int[] values = new int[16];
+	private String[] failures = new String[16];
+	private byte[] operators = new byte[16];
+	private int[] opens = new int[16];
+	private int operatorCount;
+
+	private TermParser(CharSequence input) {
+		this.input = input;
+	}
+
+	public static Term parse(CharSequence input) {
+		if (input == null) {
+			throw new IllegalArgumentException("Input cannot be null");
+		}
+		return new TermParser(input).parse();
+	}
+
+	// maps the file and parses its bytes as ASCII in place; the file must be
+	// smaller than 2 GB
+	public static Term parse(Path file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Path cannot be null");
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(String.format("file too large: %s bytes", size));
+			}
+			return parse(new Ascii(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)));
+		}
+	}
+
+	private Term parse() {
+		int length = input.length();
+		int pos = 0;
+		boolean operand = true;
+		while (true) {
+			char c = 0;
+			while (pos < length && isSpace(c = input.charAt(pos))) {
+				pos++;
+			}
+			if (pos == length) {
+				break;
+			}
+			if (operand) {
+				if (c == '(') {
+					pushOperator(OPEN, pos);
+					pos++;
+				}
+				else {
+					pos = literal(pos, length);
+					operand = false;
+				}
+				continue;
+			}
+			switch (c) {
+			case '+':
+				reduce(PLUS);
+				pushOperator(PLUS, pos);
+				operand = true;
+				break;
+			case '*':
+				reduce(TIMES);
+				pushOperator(TIMES, pos);
+				operand = true;
+				break;
+			case '!':
+				factorial(pos);
+				break;
+			case ')':
+				reduce(PLUS);
+				if (operatorCount == 0) {
+					throw new TermSyntaxException("unmatched ')'", pos);
+				}
+				operatorCount--;
+				break;
+			default:
+				throw new TermSyntaxException(String.format("expected an operator but found '%s'", c), pos);
+			}
+			pos++;
+		}
+		if (operand) {
+			throw new TermSyntaxException("unexpected end of input", length);
+		}
+		reduce(PLUS);
+		if (operatorCount > 0) {
+			throw new TermSyntaxException("unclosed '('", opens[operatorCount - 1]);
+		}
+		return operands[0];
+	}
+
+	// reads an optionally negative integer literal starting at pos and
+	// returns the position just after it
+	private int literal(int pos, int length) {
+		int start = pos;
+		boolean negative = pos < length && input.charAt(pos) == '-';
+		if (negative) {
+			pos++;
+		}
+		long value = 0;
+		long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+		char c;
+		while (pos < length && (c = input.charAt(pos)) >= '0' && c <= '9') {
+			value = value * 10 + (c - '0');
+			if (value > limit) {
+				throw new TermSyntaxException("integer literal out of range", start);
+			}
+			pos++;
+		}
+		if (pos == start + (negative ? 1 : 0)) {
+			if (pos == length) {
+				throw new TermSyntaxException("unexpected end of input", length);
+			}
+			throw new TermSyntaxException(String.format("expected a number or '(' but found '%s'", input.charAt(pos)), pos);
+		}
+		pushOperand((int) (negative ? -value : value));
+		return pos;
+	}
+
+	// rejects an operand that is negative or whose evaluation throws, and
+	// defers an overflow of the factorial itself to whatever evaluates it
+	private void factorial(int pos) {
+		int top = operandCount - 1;
+		if (failures[top] != null) {
+			throw new TermSyntaxException(failures[top], pos);
+		}
+		if (values[top] < 0) {
+			throw new TermSyntaxException(String.format("negative value: %s", values[top]), pos);
+		}
+		operands[top] = new Factorial(operands[top]);
+		try {
+			values[top] = Factorials.exact(values[top]);
+		}
+		catch (ArithmeticException e) {
+			failures[top] = e.getMessage();
+		}
+	}
+
+	// applies every stacked operator that binds at least as tightly as
+	// precedence, stopping at an open parenthesis
+	private void reduce(byte precedence) {
+		while (operatorCount > 0 && operators[operatorCount - 1] >= precedence) {
+			int r = --operandCount;
+			int l = r - 1;
+			boolean plus = operators[--operatorCount] == PLUS;
+			operands[l] = plus ? new Plus(operands[l], operands[r]) : new Times(operands[l], operands[r]);
+			// the left operand is evaluated first, so its failure wins
+			failures[l] = failures[l] != null ? failures[l] : failures[r];
+			values[l] = plus ? values[l] + values[r] : values[l] * values[r];
+		}
+	}
+
+	private void pushOperand(int value) {
+		if (operandCount == operands.length) {
+			operands = Arrays.copyOf(operands, operandCount * 2);
+			values = Arrays.copyOf(values, operandCount * 2);
+			failures = Arrays.copyOf(failures, operandCount * 2);
+		}
+		values[operandCount] = value;
+		failures[operandCount] = null;
+		operands[operandCount++] = new Number(value);
+	}
+
+	private void pushOperator(byte op, int pos) {
+		if (operatorCount == operators.length) {
+			operators = Arrays.copyOf(operators, operatorCount * 2);
+			opens = Arrays.copyOf(opens, operatorCount * 2);
+		}
+		operators[operatorCount] = op;
+		opens[operatorCount++] = pos;
+	}
+
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	// read-only view of a byte buffer as single-byte chars
+	private static final class Ascii implements CharSequence {
+		private final ByteBuffer bytes;
+
+		private Ascii(ByteBuffer bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int length() {
+			return bytes.limit();
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (bytes.get(index) & 0xff);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			ByteBuffer slice = bytes.duplicate();
+			slice.position(start).limit(end);
+			return new Ascii(slice.slice());
+		}
+
+		@Override
+		public String toString() {
+			byte[] copy = new byte[bytes.limit()];
+			bytes.duplicate().get(copy);
+			return new String(copy, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+// Thrown by TermParser when its input is not a well-formed expression.
+// getPosition() is the offset of the offending character (the input length
+// when the input ended too early).
+public class TermSyntaxException extends IllegalArgumentException {
+	private static final long serialVersionUID = 1L;
+
+	private final int position;
+
+	public TermSyntaxException(String message, int position) {
+		super(String.format("%s at position %d", message, position));
+		this.position = position;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps the k most populous cities of every state, plus the k most populous
+// overall. Each state is a shard with its own lock, so concurrent reports for
+// different states never contend; the shard publishes an immutable snapshot
+// whenever its ranking changes, so reading one state is lock-free and O(1).
+// The overall ranking is merged from the shard snapshots on the first read
+// after any of them changed and published for the reads that follow, which
+// are O(1) until a shard changes again. Shards are found by the city's state
+// code, in an array that is copied when a new state arrives.
+public class TopCitiesByState implements BatchObserver, Mergeable<TopCitiesByState> {
+	private final int k;
+	private final Object lock = new Object();
+	// index is the state code, null for a state with no reports
+	private volatile Shard[] shards;
+	// bumped after any shard's snapshot changes
+	private final AtomicLong version = new AtomicLong();
+	private volatile Overall overall = new Overall(-1, List.of());
+
+	public TopCitiesByState() {
+		this(5);
+	}
+
+	public TopCitiesByState(int k) {
+		this.k = k;
+		// code 0 is the null state; CityRanking validates k
+		this.shards = new Shard[] { new Shard(k, version) };
+	}
+
+	public void update(Observable o) {
+		if (o instanceof CensusOffice) {
+			City city = ((CensusOffice) o).getReported();
+			shard(city.getStateCode()).offer(city);
+		}
+	}
+
+	// a run of cities from the same state is offered under one lock
+	public void updateAll(Observable o, List<City> cities) {
+		if (o instanceof CensusOffice) {
+			int from = 0;
+			while (from < cities.size()) {
+				int state = cities.get(from).getStateCode();
+				int to = from + 1;
+				while (to < cities.size() && cities.get(to).getStateCode() == state) {
+					to++;
+				}
+				shard(state).offerAll(cities.subList(from, to));
+				from = to;
+			}
+		}
+	}
+
+	// shard by shard; other's shards are read without their locks
+	public void merge(TopCitiesByState other) {
+		if (other == null) {
+			throw new IllegalArgumentException("Observer cannot be null");
+		}
+		if (other != this) {
+			Shard[] theirs = other.shards;
+			for (int code = 0; code < theirs.length; code++) {
+				if (theirs[code] != null) {
+					shard(code).merge(theirs[code]);
+				}
+			}
+		}
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	// the states seen so far, in the order they were first seen anywhere
+	public Set<String> getStates() {
+		Shard[] current = shards;
+		Set<String> states = new LinkedHashSet<>();
+		for (int code = 1; code < current.length; code++) {
+			if (current[code] != null) {
+				states.add(StateDictionary.state(code));
+			}
+		}
+		return Collections.unmodifiableSet(states);
+	}
+
+	// largest first; empty for a state with no reports
+	public List<City> getTop(String state) {
+		int code = StateDictionary.find(state);
+		Shard[] current = shards;
+		Shard shard = code >= 0 && code < current.length ? current[code] : null;
+		return shard == null ? List.of() : shard.top;
+	}
+
+	// largest first over all states, in CityRanking's order
+	public List<City> getTop() {
+		// read before the shards, so a change made while merging leaves the
+		// published result stale rather than wrongly current
+		long v = version.get();
+		Overall current = overall;
+		if (current.version == v) {
+			return current.top;
+		}
+		List<City> top = mergeShards();
+		overall = new Overall(v, top);
+		return top;
+	}
+
+	private List<City> mergeShards() {
+		PriorityQueue<Cursor> heads = new PriorityQueue<>();
+		for (Shard shard : shards) {
+			if (shard != null) {
+				add(heads, shard.top);
+			}
+		}
+		List<City> merged = new ArrayList<>(k);
+		while (merged.size() < k && !heads.isEmpty()) {
+			Cursor head = heads.poll();
+			merged.add(head.cities.get(head.index++));
+			if (head.index < head.cities.size()) {
+				heads.add(head);
+			}
+		}
+		return Collections.unmodifiableList(merged);
+	}
+
+	private Shard shard(int code) {
+		Shard[] current = shards;
+		if (code < current.length && current[code] != null) {
+			return current[code];
+		}
+		synchronized (lock) {
+			current = shards;
+			if (code < current.length && current[code] != null) {
+				return current[code];
+			}
+			Shard[] next = Arrays.copyOf(current, Math.max(current.length, StateDictionary.size()));
+			next[code] = new Shard(k, version);
+			shards = next;
+			return next[code];
+		}
+	}
+
+	private static void add(PriorityQueue<Cursor> heads, List<City> cities) {
+		if (!cities.isEmpty()) {
+			heads.add(new Cursor(cities));
+		}
+	}
+
+	private static final class Shard {
+		private final CityRanking ranking;
+		private final AtomicLong version;
+		private volatile List<City> top = List.of();
+
+		private Shard(int k, AtomicLong version) {
+			ranking = new CityRanking(k);
+			this.version = version;
+		}
+
+		private synchronized void offer(City city) {
+			if (ranking.offer(city)) {
+				publish();
+			}
+		}
+
+		private synchronized void offerAll(List<City> cities) {
+			boolean changed = false;
+			for (City city : cities) {
+				changed |= ranking.offer(city);
+			}
+			if (changed) {
+				publish();
+			}
+		}
+
+		private synchronized void merge(Shard other) {
+			if (ranking.merge(other.ranking)) {
+				publish();
+			}
+		}
+
+		private void publish() {
+			top = ranking.getTop();
+			version.incrementAndGet();
+		}
+	}
+
+	// the overall top k as of a version
+	private static final class Overall {
+		private final long version;
+		private final List<City> top;
+
+		private Overall(long version, List<City> top) {
+			this.version = version;
+			this.top = top;
+		}
+	}
+
+	// position in one shard's snapshot, ordered by the city it points at
+	private static final class Cursor implements Comparable<Cursor> {
+		private final List<City> cities;
+		private int index;
+
+		private Cursor(List<City> cities) {
+			this.cities = cities;
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			return CityRanking.ORDER.compare(cities.get(index), other.cities.get(other.index));
+		}
+	}
+}
@@ -1,45 +1,53 @@
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class TopFiveCities implements Observer{
-	private List<City> city = new ArrayList<City>(20);
+public class TopFiveCities implements BatchObserver, Mergeable<TopFiveCities> {
+	private final CityRanking ranking;
 	private CensusOffice off;
 	private City c;
-	
+
+	public TopFiveCities() {
+		this(5);
+	}
+
+	public TopFiveCities(int k) {
+		ranking = new CityRanking(k);
+	}
+
 	public void update(Observable o) {
 		if (o instanceof CensusOffice) {
 			off = ((CensusOffice) o);
 			c = off.getReported();
-			city.add(c);
+			ranking.offer(c);
 		}
 	}
-	
-	public List<City> sort() {
-		List<City> fSort = city;
-		for (int i = 0; i < city.size(); i ++ ) {
-			for (int j = 0; j < city.size()-i-1; j ++) {
-
-				if(city.get(j).getPopulation() < city.get(j + 1).getPopulation()) {
-					City temp = fSort.get(j);
-					fSort.set(j, fSort.get(j+1));
 
-					fSort.set(j+1, temp);
-				}
+	public void updateAll(Observable o, List<City> cities) {
+		if (o instanceof CensusOffice && !cities.isEmpty()) {
+			off = ((CensusOffice) o);
+			for (City each : cities) {
+				ranking.offer(each);
 			}
+			c = cities.get(cities.size() - 1);
 		}
+	}
 
-		if(fSort.size() > 5) {
-			return fSort.subList(0, 5);
+	public void merge(TopFiveCities other) {
+		if (other == null) {
+			throw new IllegalArgumentException("Observer cannot be null");
 		}
-		return fSort;
+		ranking.merge(other.ranking);
+	}
+
+	public int getK() {
+		return ranking.getK();
 	}
-	
+
 	public List<City> getTopFive() {
-		return sort();
+		return ranking.getTop();
 	}
 
 	public static void main(String [] args) {
-		
+
 	}
 }
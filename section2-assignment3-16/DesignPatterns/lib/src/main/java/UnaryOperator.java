@@ -12,4 +12,18 @@ public abstract class UnaryOperator implements Term {
 	public Term getTerm() {
 		return termOne;
 	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		return o != null && o.getClass() == getClass() && TermEquality.equal(this, (Term) o);
+	}
+
+	// 31 * class + operand
+	@Override
+	public int hashCode() {
+		return TermEquality.hash(this);
+	}
 }
@@ -0,0 +1,32 @@
+// A leaf standing for the value of input column index. It has no value on its
+// own; evaluate the tree over columns with BulkEvaluator instead.
+public class Variable implements Term {
+	private final int index;
+
+	public Variable(int index) {
+		if (index < 0) {
+			throw new IllegalArgumentException(String.format("negative index: %s", index));
+		}
+		this.index = index;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	@Override
+	public int getValue() {
+		throw new UnsupportedOperationException(String.format("variable %s has no value", index));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o != null && o.getClass() == getClass() && ((Variable) o).index == index;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * getClass().hashCode() + index;
+	}
+
+}
@@ -0,0 +1,69 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A map whose keys are compared by identity and held weakly, so an entry
+// drops out once its key is no longer reachable. Thread-safe.
+final class WeakIdentityMap<K, V> {
+	private final ReferenceQueue<K> cleared = new ReferenceQueue<>();
+	private final Map<Object, V> entries = new ConcurrentHashMap<>();
+
+	V get(K key) {
+		return entries.get(new Probe(key));
+	}
+
+	void put(K key, V value) {
+		Reference<? extends K> ref;
+		while ((ref = cleared.poll()) != null) {
+			entries.remove(ref);
+		}
+		entries.put(new Ref<>(key, cleared), value);
+	}
+
+	private static final class Ref<K> extends WeakReference<K> {
+		private final int hash;
+
+		private Ref(K key, ReferenceQueue<K> queue) {
+			super(key, queue);
+			hash = System.identityHashCode(key);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			Object key = get();
+			if (key == null) {
+				return false;
+			}
+			return o instanceof Ref ? ((Ref<?>) o).get() == key : o instanceof Probe && ((Probe) o).key == key;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	// looks a key up without allocating a reference for it
+	private static final class Probe {
+		private final Object key;
+
+		private Probe(Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Ref ? ((Ref<?>) o).get() == key : o instanceof Probe && ((Probe) o).key == key;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(key);
+		}
+	}
+}
@@ -1,24 +1,35 @@
 public final class City {
 	private final String name;
-	private final String state;
+	private final int    stateCode;
 	private final int    population;
 
+	// the state is kept as its StateDictionary code, so every city with the
+	// same state shares one String
 	public City(String name, String state, int population) {
+		this(name, StateDictionary.code(state), population);
+	}
+	City(String name, int stateCode, int population) {
+		if (stateCode < 0 || stateCode >= StateDictionary.size()) {
+			throw new IllegalArgumentException(String.format("unknown state code [%s]", stateCode));
+		}
 		this.name       = name;
-		this.state      = state;
+		this.stateCode  = stateCode;
 		this.population = population;
 	}
 	public String getName() {
 		return name;
 	}
 	public String getState() {
-		return state;
+		return StateDictionary.state(stateCode);
+	}
+	public int getStateCode() {
+		return stateCode;
 	}
 	public int getPopulation() {
 		return population;
 	}
 	@Override
 	public String toString() {
-		return "City [name=" + name + ", state=" + state + ", population=" + population + "]";
+		return "City [name=" + name + ", state=" + getState() + ", population=" + population + "]";
 	}
 }
@@ -0,0 +1,154 @@
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.truth.Truth;
+
+public class AsyncCensusOfficeTest {
+	private City virginiaBeach = new City("Virginia Beach","VA",447021);
+	private City norfolk       = new City("Norfolk","VA",245782);
+	private City chesapeake    = new City("Chesapeake","VA",228417);
+	private City richmond      = new City("Richmond","VA",210309);
+	private City newportNews   = new City("Newport News","VA",180726);
+	private City alexandria    = new City("Alexandria","VA",146294);
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError( "condition not met in time" );
+			}
+			Thread.sleep( 1 );
+		}
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		Throwable t = assertThrows( IllegalArgumentException.class, () -> new AsyncCensusOffice( 1, 0, AsyncCensusOffice.Overflow.BLOCK, Runnable::run ));
+		Truth.assertThat( t.getMessage() ).isEqualTo( "capacity must be greater than 0 [0]" );
+		t = assertThrows( IllegalArgumentException.class, () -> new AsyncCensusOffice( 1, 4, null, Runnable::run ));
+		Truth.assertThat( t.getMessage() ).isEqualTo( "Overflow policy cannot be null" );
+		t = assertThrows( IllegalArgumentException.class, () -> new AsyncCensusOffice( 1, 4, AsyncCensusOffice.Overflow.FAIL, null ));
+		Truth.assertThat( t.getMessage() ).isEqualTo( "Executor cannot be null" );
+		t = assertThrows( IllegalArgumentException.class, () -> new AsyncCensusOffice( 0, 4, AsyncCensusOffice.Overflow.FAIL, Runnable::run ));
+		Truth.assertThat( t.getMessage() ).isEqualTo( "office number must greater that 0 [0]" );
+	}
+
+	@Test
+	public void testDirectExecutor() {
+		AsyncCensusOffice a    = new AsyncCensusOffice( 1, 2, AsyncCensusOffice.Overflow.FAIL, Runnable::run );
+		LastCity          last = new LastCity();
+		TopFiveCities     top  = new TopFiveCities( 2 );
+		Truth.assertThat( a.addObserver( last )).isTrue();
+		Truth.assertThat( a.addObserver( last )).isFalse();
+		Truth.assertThat( a.addObserver( top  )).isTrue();
+
+		a.report( norfolk );
+		a.report( virginiaBeach );
+		a.reportAll( List.of( richmond, alexandria ));
+		Truth.assertThat( last.getLastCity()   ).isEqualTo( alexandria );
+		Truth.assertThat( last.getLastOffice() ).isEqualTo( a );
+		Truth.assertThat( top.getTopFive()     ).containsExactlyElementsIn( List.of( virginiaBeach, norfolk )).inOrder();
+		Truth.assertThat( a.getReported()      ).isEqualTo( alexandria );
+		Truth.assertThat( a.getQueueDepth()    ).isEqualTo( 0 );
+		Truth.assertThat( a.getLag( last )     ).isEqualTo( 0 );
+
+		Truth.assertThat( a.removeObserver( last )).isTrue();
+		Truth.assertThat( a.removeObserver( last )).isFalse();
+		Throwable t = assertThrows( IllegalArgumentException.class, () -> a.getLag( last ));
+		Truth.assertThat( t.getMessage() ).startsWith( "observer is not registered" );
+	}
+
+	@Test
+	public void testSlowObserverDoesNotStallOthers() throws InterruptedException {
+		ExecutorService   pool     = Executors.newFixedThreadPool( 2 );
+		CountDownLatch    release  = new CountDownLatch( 1 );
+		CountDownLatch    entered  = new CountDownLatch( 1 );
+		List<City>        seen     = Collections.synchronizedList( new ArrayList<>() );
+		AsyncCensusOffice a        = new AsyncCensusOffice( 1, 2, AsyncCensusOffice.Overflow.FAIL, pool );
+		LastCity          fast     = new LastCity();
+		Observer          slow     = observable -> {
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			seen.add(((CensusOffice) observable ).getReported() );
+		};
+		try {
+			Truth.assertThat( a.addObserver( slow )).isTrue();
+			Truth.assertThat( a.addObserver( fast )).isTrue();
+
+			a.report( norfolk );
+			entered.await();
+			a.report( chesapeake );
+			await( () -> a.getLag( fast ) == 0 );
+			a.report( richmond );
+			Truth.assertThat( a.getQueueDepth( slow )).isEqualTo( 2 );
+			Truth.assertThat( a.getLag( slow )       ).isEqualTo( 3 );
+			Throwable t = assertThrows( IllegalStateException.class, () -> a.report( alexandria ));
+			Truth.assertThat( t.getMessage() ).startsWith( "queue full for observer" );
+			Truth.assertThat( a.getReported()        ).isEqualTo( alexandria );
+			Truth.assertThat( a.getLag( slow )       ).isEqualTo( 3 );
+
+			await( () -> a.getLag( fast ) == 0 );
+			Truth.assertThat( fast.getLastCity() ).isEqualTo( alexandria );
+
+			t = assertThrows( IllegalStateException.class, () -> a.reportAll( List.of( norfolk, chesapeake )));
+			Truth.assertThat( t.getMessage() ).startsWith( "queue full for observer" );
+			Truth.assertThat( a.getQueueDepth( slow )).isEqualTo( 2 );
+			await( () -> a.getLag( fast ) == 0 );
+			Truth.assertThat( fast.getLastCity() ).isEqualTo( chesapeake );
+
+			release.countDown();
+			await( () -> a.getLag( slow ) == 0 );
+			Truth.assertThat( seen ).containsExactlyElementsIn( List.of( norfolk, chesapeake, richmond )).inOrder();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		ExecutorService   pool    = Executors.newSingleThreadExecutor();
+		CountDownLatch    release = new CountDownLatch( 1 );
+		CountDownLatch    entered = new CountDownLatch( 1 );
+		List<City>        seen    = Collections.synchronizedList( new ArrayList<>() );
+		AsyncCensusOffice a       = new AsyncCensusOffice( 1, 2, AsyncCensusOffice.Overflow.DROP_OLDEST, pool );
+		Observer          slow    = observable -> {
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			seen.add(((CensusOffice) observable ).getReported() );
+		};
+		try {
+			Truth.assertThat( a.addObserver( slow )).isTrue();
+			a.report( norfolk );
+			entered.await();
+			for (City city : List.of( chesapeake, richmond, newportNews, alexandria )) {
+				a.report( city );
+			}
+			Truth.assertThat( a.getDropped   ( slow )).isEqualTo( 2 );
+			Truth.assertThat( a.getQueueDepth( slow )).isEqualTo( 2 );
+
+			release.countDown();
+			await( () -> a.getLag( slow ) == 0 );
+			Truth.assertThat( seen ).containsExactlyElementsIn( List.of( norfolk, newportNews, alexandria )).inOrder();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
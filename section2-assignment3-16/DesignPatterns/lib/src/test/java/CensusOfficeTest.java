@@ -1,12 +1,24 @@
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.IOException;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -168,6 +180,95 @@ public class CensusOfficeTest {
 			Truth.assertThat( a2.hasObservers()     ).isFalse();
 			Truth.assertThat( a3.hasObservers()     ).isFalse();
 		}
+		@Test
+		public void testConcurrentReports() throws InterruptedException {
+			int           threads = 8;
+			int           reports = 10_000;
+			CensusOffice  a       = new CensusOffice( 1 );
+			AtomicInteger counter = new AtomicInteger();
+			AtomicInteger wrong   = new AtomicInteger();
+			Observer      b       = observable -> {
+				City reported = ((CensusOffice) observable).getReported();
+				if (!reported.getName().equals( Thread.currentThread().getName() )) {
+					wrong.incrementAndGet();
+				}
+				counter.incrementAndGet();
+			};
+			Truth.assertThat( a.addObserver( b )).isTrue();
+
+			Thread[] reporters = new Thread[ threads ];
+			for (int t = 0; t < threads; t++) {
+				String name = "reporter-" + t;
+				City   city = new City( name, "VA", t );
+				reporters[ t ] = new Thread( () -> {
+					for (int i = 0; i < reports; i++) {
+						a.report( city );
+					}
+				}, name );
+			}
+			Thread churn = new Thread( () -> {
+				for (int i = 0; i < reports; i++) {
+					Observer extra = observable -> {};
+					a.addObserver   ( extra );
+					a.removeObserver( extra );
+				}
+			});
+			for (Thread t : reporters) {
+				t.start();
+			}
+			churn.start();
+			for (Thread t : reporters) {
+				t.join();
+			}
+			churn.join();
+
+			Truth.assertThat( counter.get() ).isEqualTo( threads * reports );
+			Truth.assertThat( wrong  .get() ).isEqualTo( 0 );
+			Truth.assertThat( a.removeObserver( b )).isTrue();
+			Truth.assertThat( a.hasObservers()     ).isFalse();
+		}
+		@Test
+		public void testReportAll() {
+			AtomicInteger perCity  = new AtomicInteger();
+			AtomicInteger batches  = new AtomicInteger();
+			CensusOffice  a        = new CensusOffice( 3 );
+			LastCity      last     = new LastCity() {
+				@Override
+				public void update(Observable observable) {
+					super.update( observable );
+					perCity.incrementAndGet();
+				}
+				@Override
+				public void updateAll(Observable observable, List<City> cities) {
+					super.updateAll( observable, cities );
+					batches.incrementAndGet();
+				}
+			};
+			TopFiveCities top      = new TopFiveCities();
+			List<City>    reported = new ArrayList<>();
+			Observer      plain    = observable -> reported.add(((CensusOffice) observable ).getReported() );
+			Truth.assertThat( a.addObserver( last  )).isTrue();
+			Truth.assertThat( a.addObserver( top   )).isTrue();
+			Truth.assertThat( a.addObserver( plain )).isTrue();
+
+			a.reportAll( List.of( hampton, virginiaBeach, suffolk, norfolk, lynchburg, richmond ));
+			Truth.assertThat( perCity.get()         ).isEqualTo( 0 );
+			Truth.assertThat( batches.get()         ).isEqualTo( 1 );
+			Truth.assertThat( last.getLastCity()    ).isEqualTo( richmond );
+			Truth.assertThat( last.getLastOffice()  ).isEqualTo( a );
+			Truth.assertThat( a.getReported()       ).isEqualTo( richmond );
+			Truth.assertThat( top.getTopFive()      ).containsExactlyElementsIn( List.of( virginiaBeach, norfolk, richmond, hampton, suffolk ));
+			Truth.assertThat( reported              ).containsExactlyElementsIn( List.of( hampton, virginiaBeach, suffolk, norfolk, lynchburg, richmond )).inOrder();
+
+			a.reportAll( List.of() );
+			Truth.assertThat( batches.get()         ).isEqualTo( 1 );
+
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> a.reportAll( null ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "Cities cannot be null" );
+			t = assertThrows( IllegalArgumentException.class, () -> a.reportAll( Arrays.asList( roanoke, null )));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "City cannot be null" );
+			Truth.assertThat( last.getLastCity()    ).isEqualTo( richmond );
+		}
 	}
 	
 	@Nested
@@ -513,5 +614,656 @@ public class CensusOfficeTest {
 			Truth.assertThat( actual   ).isNotNull();
 			Truth.assertThat( actual   ).containsExactlyElementsIn( List.of( hampton, roanoke ));
 		}
+		@Test
+		public void testConfigurableK() {
+			CensusOffice  a1 = new CensusOffice( 1 );
+			TopFiveCities b1 = new TopFiveCities( 3 );
+			Truth.assertThat( b1.getK() ).isEqualTo( 3 );
+			Truth.assertThat( a1.addObserver( b1 )).isTrue();
+
+			for (City city : List.of( harrisonburg, norfolk, suffolk, virginiaBeach, roanoke, richmond )) {
+				a1.report( city );
+			}
+			Truth.assertThat( b1.getTopFive() ).containsExactlyElementsIn( List.of( virginiaBeach, norfolk, richmond )).inOrder();
+
+			for (int k : List.of( Integer.MIN_VALUE, -1, 0 )) {
+				Throwable t = assertThrows( IllegalArgumentException.class, () -> new TopFiveCities( k ));
+				Truth.assertThat( t.getMessage() ).isEqualTo( String.format( "k must be greater than 0 [%d]", k ));
+			}
+		}
+		@Test
+		public void testRevisedPopulation() {
+			CensusOffice  a1 = new CensusOffice( 1 );
+			TopFiveCities b1 = new TopFiveCities( 3 );
+			Truth.assertThat( a1.addObserver( b1 )).isTrue();
+			for (City city : List.of( suffolk, norfolk, richmond, roanoke )) {
+				a1.report( city );
+			}
+			Truth.assertThat( b1.getTopFive() ).containsExactlyElementsIn( List.of( norfolk, richmond, roanoke )).inOrder();
+
+			City grownSuffolk = new City( "Suffolk", "VA", 300000 );
+			a1.report( grownSuffolk );
+			Truth.assertThat( b1.getTopFive() ).containsExactlyElementsIn( List.of( grownSuffolk, norfolk, richmond )).inOrder();
+
+			City shrunkNorfolk = new City( "Norfolk", "VA", 1000 );
+			a1.report( shrunkNorfolk );
+			Truth.assertThat( b1.getTopFive() ).containsExactlyElementsIn( List.of( grownSuffolk, richmond, roanoke )).inOrder();
+
+			// same name in another state is another city
+			City otherNorfolk = new City( "Norfolk", "NE", 24955 );
+			a1.reportAll( List.of( otherNorfolk, new City( "Richmond", "VA", 90000 )));
+			Truth.assertThat( b1.getTopFive().get( 0 ) ).isSameInstanceAs( grownSuffolk );
+			Truth.assertThat( b1.getTopFive().get( 1 ) ).isSameInstanceAs( roanoke );
+			Truth.assertThat( b1.getTopFive().get( 2 ).getPopulation() ).isEqualTo( 90000 );
+
+			CityRanking ranking = new CityRanking( 2 );
+			for (int i = 0; i < 1000; i++) {
+				ranking.offer( new City( "City" + (i % 10), "VA", i ));
+			}
+			Truth.assertThat( ranking.getDistinct() ).isEqualTo( 10 );
+			Truth.assertThat( ranking.size()        ).isEqualTo( 2 );
+			Truth.assertThat( ranking.getTop().get( 0 ).getPopulation() ).isEqualTo( 999 );
+			Truth.assertThat( ranking.offer( new City( "City9", "VA", 0 ))).isTrue();
+			Truth.assertThat( ranking.getTop().get( 0 ).getPopulation() ).isEqualTo( 998 );
+			Truth.assertThat( ranking.offer( new City( "City0", "VA", 1 ))).isFalse();
+		}
+		@Test
+		public void testRankingMatchesSort() {
+			Random            random   = new Random( 42 );
+			CityRanking       ranking  = new CityRanking( 5 );
+			Map<String, City> latest   = new HashMap<>();
+			List<City>        previous = List.of();
+			for (int i = 0; i < 20_000; i++) {
+				City city = new City( "City" + random.nextInt( 50 ), "VA", random.nextInt( 1000 ));
+				latest.put( city.getName(), city );
+				boolean changed = ranking.offer( city );
+				List<City> expected = latest.values().stream()
+						.sorted( Comparator.comparingInt( City::getPopulation ).reversed().thenComparing( City::getName ))
+						.limit( 5 ).collect( Collectors.toList() );
+				Truth.assertThat( ranking.getTop() ).containsExactlyElementsIn( expected ).inOrder();
+				if (!changed) {
+					Truth.assertThat( expected ).isEqualTo( previous );
+				}
+				previous = expected;
+			}
+		}
+		@Test
+		public void testTopFiveIsSnapshot() {
+			CensusOffice  a1 = new CensusOffice( 1 );
+			TopFiveCities b1 = new TopFiveCities();
+			Truth.assertThat( a1.addObserver( b1 )).isTrue();
+
+			a1.report( suffolk );
+			a1.report( norfolk );
+			List<City> before = b1.getTopFive();
+			Truth.assertThat( before ).containsExactlyElementsIn( List.of( norfolk, suffolk )).inOrder();
+			assertThrows( UnsupportedOperationException.class, () -> before.add( hampton ));
+
+			a1.report( virginiaBeach );
+			Truth.assertThat( before          ).containsExactlyElementsIn( List.of( norfolk, suffolk )).inOrder();
+			Truth.assertThat( b1.getTopFive() ).containsExactlyElementsIn( List.of( virginiaBeach, norfolk, suffolk )).inOrder();
+		}
+	}
+	@Nested
+	class TestTopCitiesByState {
+		private City baltimore  = new City("Baltimore","MD",585708);
+		private City frederick  = new City("Frederick","MD",78171);
+		private City rockville  = new City("Rockville","MD",67117);
+		private City washington = new City("Washington",null,689545);
+		@Test
+		public void testPerStateAndOverall() {
+			CensusOffice     a1 = new CensusOffice( 1 );
+			TopCitiesByState b1 = new TopCitiesByState( 2 );
+			Truth.assertThat( b1.getK() ).isEqualTo( 2 );
+			Truth.assertThat( a1.addObserver( b1 )).isTrue();
+			Truth.assertThat( b1.getTop()       ).isEmpty();
+			Truth.assertThat( b1.getTop( "VA" ) ).isEmpty();
+
+			for (City city : List.of( suffolk, rockville, norfolk, frederick, richmond, baltimore, virginiaBeach )) {
+				a1.report( city );
+			}
+			Truth.assertThat( b1.getStates()    ).containsExactlyElementsIn( List.of( "VA", "MD" ));
+			Truth.assertThat( b1.getTop( "VA" ) ).containsExactlyElementsIn( List.of( virginiaBeach, norfolk )).inOrder();
+			Truth.assertThat( b1.getTop( "MD" ) ).containsExactlyElementsIn( List.of( baltimore, frederick )).inOrder();
+			Truth.assertThat( b1.getTop()       ).containsExactlyElementsIn( List.of( baltimore, virginiaBeach )).inOrder();
+
+			a1.report( washington );
+			Truth.assertThat( b1.getTop( null ) ).containsExactlyElementsIn( List.of( washington ));
+			Truth.assertThat( b1.getTop()       ).containsExactlyElementsIn( List.of( washington, baltimore )).inOrder();
+
+			List<City> before = b1.getTop( "MD" );
+			assertThrows( UnsupportedOperationException.class, () -> before.add( rockville ));
+			a1.reportAll( List.of( hampton, new City( "Annapolis", "MD", 600000 ), chesapeake, roanoke ));
+			Truth.assertThat( before            ).containsExactlyElementsIn( List.of( baltimore, frederick )).inOrder();
+			Truth.assertThat( b1.getTop( "MD" ).get( 0 ).getName() ).isEqualTo( "Annapolis" );
+			Truth.assertThat( b1.getTop( "VA" ) ).containsExactlyElementsIn( List.of( virginiaBeach, norfolk )).inOrder();
+
+			for (int k : List.of( Integer.MIN_VALUE, -1, 0 )) {
+				Throwable t = assertThrows( IllegalArgumentException.class, () -> new TopCitiesByState( k ));
+				Truth.assertThat( t.getMessage() ).isEqualTo( String.format( "k must be greater than 0 [%d]", k ));
+			}
+		}
+		@Test
+		public void testOverallSnapshot() {
+			CensusOffice     a = new CensusOffice( 1 );
+			TopCitiesByState b = new TopCitiesByState( 3 );
+			a.addObserver( b );
+			// ties go by name, then state, as in CityRanking
+			City zeta  = new City( "Zeta",  "VA", 100000 );
+			City alpha = new City( "Alpha", "MD", 100000 );
+			City beta  = new City( "Beta",  "VA", 100000 );
+			a.reportAll( List.of( zeta, alpha, beta, rockville ));
+			List<City> top = b.getTop();
+			Truth.assertThat( top ).containsExactlyElementsIn( List.of( alpha, beta, zeta )).inOrder();
+			// published until a shard changes
+			Truth.assertThat( b.getTop() ).isSameInstanceAs( top );
+
+			a.report( baltimore );
+			Truth.assertThat( b.getTop() ).containsExactlyElementsIn( List.of( baltimore, alpha, beta )).inOrder();
+			Truth.assertThat( top ).containsExactlyElementsIn( List.of( alpha, beta, zeta )).inOrder();
+		}
+		@Test
+		public void testConcurrentStates() throws InterruptedException {
+			int              threads = 8;
+			int              reports = 10_000;
+			TopCitiesByState b       = new TopCitiesByState( 3 );
+			Thread[] reporters = new Thread[ threads ];
+			for (int t = 0; t < threads; t++) {
+				CensusOffice a     = new CensusOffice( t + 1 );
+				String       state = "S" + (t % 4);
+				a.addObserver( b );
+				reporters[ t ] = new Thread( () -> {
+					for (int i = 0; i < reports; i++) {
+						a.report( new City( state + "-" + i, state, i ));
+					}
+				});
+			}
+			for (Thread t : reporters) {
+				t.start();
+			}
+			for (Thread t : reporters) {
+				t.join();
+			}
+			Truth.assertThat( b.getStates() ).hasSize( 4 );
+			for (int s = 0; s < 4; s++) {
+				List<City> top = b.getTop( "S" + s );
+				Truth.assertThat( top ).hasSize( 3 );
+				Truth.assertThat( top.get( 0 ).getPopulation() ).isEqualTo( reports - 1 );
+				Truth.assertThat( top.get( 2 ).getPopulation() ).isEqualTo( reports - 3 ); // two offices report each city
+			}
+			Truth.assertThat( b.getTop().get( 2 ).getPopulation() ).isEqualTo( reports - 1 );
+		}
+	}
+	@Nested
+	class TestCensusLoader {
+		private Path write(String text) throws IOException {
+			Path file = Files.createTempFile( "census", ".csv" );
+			file.toFile().deleteOnExit();
+			Files.write( file, text.getBytes( StandardCharsets.UTF_8 ));
+			return file;
+		}
+		private List<String> names(List<City> cities) {
+			List<String> names = new ArrayList<>();
+			for (City c : cities) {
+				names.add( c.getName() + "," + c.getState() + "," + c.getPopulation() );
+			}
+			return names;
+		}
+		@Test
+		public void testLoad() throws IOException {
+			Path file = write( "name,state column,population\r\n"
+					+ "Norfolk,VA,245782\r\n"
+					+ "\r\n"
+					+ "\"Washington, D.C.\",,689545\n"
+					+ "\"The \"\"Big\"\" Apple\",NY,8336817\n"
+					+ "S\u00e3o Paulo,,12325232\n"
+					+ "Richmond,VA,210309" );
+			CensusOffice  a1 = new CensusOffice( 1 );
+			TopFiveCities b1 = new TopFiveCities( 3 );
+			LastCity      c1 = new LastCity();
+			a1.addObserver( b1 );
+			a1.addObserver( c1 );
+			Truth.assertThat( new CensusLoader().load( file, a1 )).isEqualTo( 5 );
+			Truth.assertThat( names( b1.getTopFive() )).containsExactly(
+					"S\u00e3o Paulo,null,12325232", "The \"Big\" Apple,NY,8336817", "Washington, D.C.,null,689545" ).inOrder();
+			Truth.assertThat( c1.getLastCity().getName() ).isEqualTo( "Richmond" );
+			Truth.assertThat( c1.getLastOffice() ).isSameInstanceAs( a1 );
+			Truth.assertThat( new CensusLoader().load( write( "" ), a1 )).isEqualTo( 0 );
+			Truth.assertThat( StateDictionary.find( "state column" )).isEqualTo( -1 );
+		}
+		@Test
+		public void testParallelMatchesSequential() throws IOException {
+			StringBuilder text = new StringBuilder();
+			Random random = new Random( 1 );
+			for (int i = 0; i < 5_000; i++) {
+				// repeated names, so later chunks revise cities of earlier ones
+				text.append( "City" ).append( random.nextInt( 2_000 )).append( ",S" ).append( random.nextInt( 10 ))
+					.append( ',' ).append( random.nextInt( 1_000_000 )).append( i % 7 == 0 ? "\r\n" : "\n" );
+			}
+			Path file = write( text.toString() );
+			CensusOffice     a1       = new CensusOffice( 1 );
+			TopCitiesByState expected = new TopCitiesByState( 4 );
+			a1.addObserver( expected );
+			Truth.assertThat( new CensusLoader().load( file, a1 )).isEqualTo( 5_000 );
+
+			for (long window : new long[] { 40, 1_000, Integer.MAX_VALUE }) {
+				CensusLoader     loader = new CensusLoader( ForkJoinPool.commonPool(), 7, window, 1 );
+				TopCitiesByState actual = loader.load( file, () -> new TopCitiesByState( 4 ));
+				Truth.assertThat( actual.getStates() ).containsExactlyElementsIn( expected.getStates() );
+				for (String state : expected.getStates()) {
+					Truth.assertThat( names( actual.getTop( state ))).containsExactlyElementsIn( names( expected.getTop( state ))).inOrder();
+				}
+				Truth.assertThat( names( actual.getTop() )).containsExactlyElementsIn( names( expected.getTop() )).inOrder();
+			}
+			TopFiveCities top = new CensusLoader( ForkJoinPool.commonPool(), 3 ).load( file, () -> new TopFiveCities( 4 ));
+			Truth.assertThat( names( top.getTopFive() )).containsExactlyElementsIn( names( expected.getTop().subList( 0, 4 ))).inOrder();
+		}
+		@Test
+		public void testMalformed() throws IOException {
+			BiConsumer<String,String> test = (text, message) -> {
+				Throwable t = assertThrows( IllegalArgumentException.class, () -> new CensusLoader().load( write( text ), new CensusOffice( 1 )));
+				Truth.assertThat( t.getMessage() ).isEqualTo( message );
+			};
+			test.accept( "Norfolk,VA,245782\nRichmond,VA\n"      , "malformed record at offset 18" );
+			test.accept( "Norfolk,VA,245782\nRichmond,VA,21x\n"  , "malformed record at offset 18" );
+			test.accept( "x,y,1\nNorfolk,VA,-1\n"                , "malformed record at offset 6" );
+			test.accept( "Norfolk,VA,245782,1\n"                 , "malformed record at offset 0" );
+			test.accept( "\"Norfolk,VA,245782\n"                 , "malformed record at offset 0" );
+			test.accept( "Nor\"folk,VA,245782\n"                 , "malformed record at offset 0" );
+			test.accept( "x,y,1\nNorfolk,VA,2147483648\n"        , "population out of range at offset 6" );
+
+			Path file = write( "Norfolk,VA,245782\nVirginia Beach,VA,447021\n" );
+			Throwable t = assertThrows( IllegalArgumentException.class,
+					() -> new CensusLoader( ForkJoinPool.commonPool(), 1, 20, 1 ).load( file, new CensusOffice( 1 )));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "record too long at offset 18" );
+			t = assertThrows( IllegalArgumentException.class,
+					() -> new CensusLoader( ForkJoinPool.commonPool(), 2, 1 << 20, 1 ).load( write( "a,b,1\nc,d,e\n" ), TopFiveCities::new ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "malformed record at offset 6" );
+			t = assertThrows( IllegalArgumentException.class, () -> new CensusLoader( ForkJoinPool.commonPool(), 0 ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "parallelism must be greater than 0 [0]" );
+		}
+		@Test
+		public void testFailureStopsChunks() throws Exception {
+			StringBuilder text = new StringBuilder( "Norfolk,VA,245782\nNorfolk,VA,x\n" );
+			while (text.length() < 2_000_000) {
+				text.append( "Norfolk,VA,245782\n" );
+			}
+			Path          file    = write( text.toString() );
+			List<Thread>  threads = new ArrayList<>();
+			AtomicInteger reports = new AtomicInteger();
+			CensusLoader  loader  = new CensusLoader( task -> {
+				Thread thread = new Thread( task );
+				threads.add( thread );
+				thread.start();
+			}, 2, 1 << 20, 1 );
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> loader.load( file, () -> new TopFiveCities() {
+				@Override
+				public void updateAll(Observable o, List<City> cities) {
+					reports.incrementAndGet();
+					super.updateAll( o, cities );
+				}
+			}));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "malformed record at offset 18" );
+			// the second chunk was stopped before the channel was closed
+			int reported = reports.get();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			Truth.assertThat( reports.get() ).isEqualTo( reported );
+		}
+	}
+	@Nested
+	class TestCityStore {
+		private List<Integer> rows(int[] rows) {
+			List<Integer> list = new ArrayList<>();
+			for (int row : rows) {
+				list.add( row );
+			}
+			return list;
+		}
+		@Test
+		public void testColumns() {
+			for (boolean direct : new boolean[] { false, true }) {
+				CityStore store = new CityStore( 2, direct );
+				Truth.assertThat( store.isDirect() ).isEqualTo( direct );
+				Truth.assertThat( store.top( 3 )).isEmpty();
+				for (City city : List.of( norfolk, richmond, new City( "S\u00e3o Paulo", null, 12325232 ), hampton, new City( "Norfolk", "NE", 24955 ), new City( null, "VA", 0 ))) {
+					store.add( city );
+				}
+				Truth.assertThat( store.size()          ).isEqualTo( 6 );
+				Truth.assertThat( store.getNameCount()  ).isEqualTo( 4 );
+				Truth.assertThat( store.getStateCount() ).isEqualTo( 2 );
+				Truth.assertThat( store.getName( 2 )    ).isEqualTo( "S\u00e3o Paulo" );
+				Truth.assertThat( store.getState( 2 )   ).isNull();
+				Truth.assertThat( store.getName( 5 )    ).isNull();
+				Truth.assertThat( store.get( 4 ).toString() ).isEqualTo( "City [name=Norfolk, state=NE, population=24955]" );
+
+				Truth.assertThat( rows( store.top( 3 ))           ).containsExactly( 2, 0, 1 ).inOrder();
+				Truth.assertThat( rows( store.top( 10, "VA" ))    ).containsExactly( 0, 1, 3, 5 ).inOrder();
+				Truth.assertThat( rows( store.top( 10, null ))    ).containsExactly( 2 );
+				Truth.assertThat( store.top( 10, "MD" )           ).isEmpty();
+
+				CityStore.Cursor cursor = store.cursor();
+				List<String> names = new ArrayList<>();
+				long total = 0;
+				while (cursor.next()) {
+					names.add( cursor.getName() );
+					total += cursor.getPopulation();
+				}
+				Truth.assertThat( names ).containsExactly( "Norfolk", "Richmond", "S\u00e3o Paulo", "Hampton", "Norfolk", null ).inOrder();
+				Truth.assertThat( total ).isEqualTo( 245782L + 210309 + 12325232 + 136836 + 24955 );
+				Truth.assertThat( cursor.moveTo( 1 ).getState() ).isEqualTo( "VA" );
+				Truth.assertThat( cursor.getRow() ).isEqualTo( 1 );
+				assertThrows( IndexOutOfBoundsException.class, () -> store.getPopulation( 6 ));
+				assertThrows( IndexOutOfBoundsException.class, () -> cursor.moveTo( -1 ));
+				Throwable t = assertThrows( IllegalStateException.class, () -> store.cursor().getPopulation() );
+				Truth.assertThat( t.getMessage() ).isEqualTo( "cursor is before the first row" );
+			}
+			for (int k : List.of( Integer.MIN_VALUE, -1, 0 )) {
+				Throwable t = assertThrows( IllegalArgumentException.class, () -> new CityStore().top( k ));
+				Truth.assertThat( t.getMessage() ).isEqualTo( String.format( "k must be greater than 0 [%d]", k ));
+			}
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> new CityStore( 0, false ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "capacity out of range [0]" );
+		}
+		@Test
+		public void testTopMatchesTopFiveCities() throws IOException {
+			Random        random = new Random( 3 );
+			CensusOffice  a1     = new CensusOffice( 1 );
+			CityStore     store  = new CityStore( 16, true );
+			StringBuilder text   = new StringBuilder();
+			a1.addObserver( store );
+			for (int i = 0; i < 20_000; i++) {
+				City city = new City( "City" + i, "S" + random.nextInt( 20 ), random.nextInt( 1_000_000 ));
+				a1.report( city );
+				text.append( city.getName() ).append( ',' ).append( city.getState() ).append( ',' ).append( city.getPopulation() ).append( '\n' );
+			}
+			CensusOffice     a2       = new CensusOffice( 2 );
+			TopCitiesByState expected = new TopCitiesByState( 5 );
+			a2.addObserver( expected );
+			for (CityStore.Cursor c = store.cursor(); c.next(); ) {
+				a2.report( c.toCity() );
+			}
+			List<String> top = new ArrayList<>();
+			for (int row : store.top( 5 )) {
+				top.add( store.getName( row ));
+			}
+			List<String> names = new ArrayList<>();
+			for (City city : expected.getTop()) {
+				names.add( city.getName() );
+			}
+			Truth.assertThat( top ).containsExactlyElementsIn( names ).inOrder();
+			for (String state : expected.getStates()) {
+				List<Integer> populations = new ArrayList<>();
+				for (int row : store.top( 5, state )) {
+					populations.add( store.getPopulation( row ));
+				}
+				List<Integer> want = new ArrayList<>();
+				for (City city : expected.getTop( state )) {
+					want.add( city.getPopulation() );
+				}
+				Truth.assertThat( populations ).containsExactlyElementsIn( want ).inOrder();
+			}
+
+			Path file = Files.createTempFile( "census", ".csv" );
+			file.toFile().deleteOnExit();
+			Files.write( file, text.toString().getBytes( StandardCharsets.UTF_8 ));
+			CityStore loaded = new CensusLoader( ForkJoinPool.commonPool(), 4, 1_000, 1 ).load( file, CityStore::new );
+			Truth.assertThat( loaded.size()          ).isEqualTo( store.size() );
+			Truth.assertThat( loaded.getStateCount() ).isEqualTo( store.getStateCount() );
+			for (int row = 0; row < store.size(); row += 997) {
+				Truth.assertThat( loaded.get( row ).toString() ).isEqualTo( store.get( row ).toString() );
+			}
+			Truth.assertThat( rows( loaded.top( 5 ))).containsExactlyElementsIn( rows( store.top( 5 ))).inOrder();
+			loaded.merge( loaded );
+			Truth.assertThat( loaded.size() ).isEqualTo( store.size() );
+		}
+	}
+	@Nested
+	class TestStateDictionary {
+		@Test
+		public void testCodes() {
+			City a = new City( "Norfolk", new String( "VA" ), 245782 );
+			City b = new City( "Richmond", new String( "VA" ), 210309 );
+			City c = new City( "Washington", null, 689545 );
+			Truth.assertThat( a.getStateCode() ).isGreaterThan( 0 );
+			Truth.assertThat( b.getStateCode() ).isEqualTo( a.getStateCode() );
+			Truth.assertThat( b.getState() ).isSameInstanceAs( a.getState() );
+			Truth.assertThat( c.getStateCode() ).isEqualTo( 0 );
+			Truth.assertThat( StateDictionary.state( a.getStateCode() )).isEqualTo( "VA" );
+			Truth.assertThat( StateDictionary.state( 0 )).isNull();
+			Truth.assertThat( StateDictionary.find( "VA" )).isEqualTo( a.getStateCode() );
+			Truth.assertThat( StateDictionary.code( "VA" )).isEqualTo( a.getStateCode() );
+			Truth.assertThat( StateDictionary.size() ).isGreaterThan( a.getStateCode() );
+
+			// looking a state up doesn't give it a code
+			int size = StateDictionary.size();
+			Truth.assertThat( new TopCitiesByState().getTop( "No Such State" )).isEmpty();
+			Truth.assertThat( StateDictionary.find( "No Such State" )).isEqualTo( -1 );
+			Truth.assertThat( StateDictionary.size() ).isEqualTo( size );
+			for (int code : List.of( -1, size )) {
+				Throwable t = assertThrows( IllegalArgumentException.class, () -> StateDictionary.state( code ));
+				Truth.assertThat( t.getMessage() ).isEqualTo( String.format( "unknown state code [%d]", code ));
+			}
+		}
+		@Test
+		public void testConcurrentCodes() throws InterruptedException {
+			int[][] codes = new int[ 4 ][ 100 ];
+			Thread[] threads = new Thread[ codes.length ];
+			for (int t = 0; t < threads.length; t++) {
+				int[] mine = codes[ t ];
+				threads[ t ] = new Thread( () -> {
+					for (int i = 0; i < mine.length; i++) {
+						mine[ i ] = new City( "x", "Concurrent" + i, i ).getStateCode();
+					}
+				});
+				threads[ t ].start();
+			}
+			for (Thread t : threads) {
+				t.join();
+			}
+			for (int i = 0; i < 100; i++) {
+				for (int[] mine : codes) {
+					Truth.assertThat( mine[ i ] ).isEqualTo( codes[ 0 ][ i ] );
+				}
+				Truth.assertThat( StateDictionary.state( codes[ 0 ][ i ] )).isEqualTo( "Concurrent" + i );
+			}
+		}
+		@Test
+		public void testFactory() {
+			CityFactory factory = new CityFactory();
+			City a = factory.create( new String( "Springfield" ), "IL", 114394 );
+			City b = factory.create( new String( "Springfield" ), StateDictionary.code( "MA" ), 155929 );
+			Truth.assertThat( b.getName() ).isSameInstanceAs( a.getName() );
+			Truth.assertThat( b.getState() ).isEqualTo( "MA" );
+			Truth.assertThat( factory.create( null, null, 0 ).getName() ).isNull();
+			Truth.assertThat( factory.size() ).isEqualTo( 1 );
+			assertThrows( IllegalArgumentException.class, () -> factory.create( "x", -1, 0 ));
+		}
+	}
+	@Nested
+	class TestPopulationStats {
+		@Test
+		public void testSummaries() {
+			CensusOffice    a1 = new CensusOffice( 1 );
+			PopulationStats b1 = new PopulationStats();
+			a1.addObserver( b1 );
+			PopulationStats.Snapshot empty = b1.snapshot();
+			Truth.assertThat( empty.getNation().getCount() ).isEqualTo( 0 );
+			Truth.assertThat( empty.getNation().getMean()  ).isEqualTo( 0.0 );
+			Truth.assertThat( empty.getStates()            ).isEmpty();
+
+			a1.report( norfolk );
+			a1.report( richmond );
+			a1.reportAll( List.of( new City( "Baltimore", "MD", 585708 ), new City( "Washington", null, 689545 ), roanoke ));
+			PopulationStats.Snapshot snapshot = b1.snapshot();
+			PopulationStats.Summary  va       = snapshot.get( "VA" );
+			Truth.assertThat( va.getCount() ).isEqualTo( 3 );
+			Truth.assertThat( va.getTotal() ).isEqualTo( 245782L + 210309 + 97469 );
+			Truth.assertThat( va.getMin()   ).isEqualTo( 97469 );
+			Truth.assertThat( va.getMax()   ).isEqualTo( 245782 );
+			Truth.assertThat( va.getMean()  ).isEqualTo( (245782.0 + 210309 + 97469) / 3 );
+			Truth.assertThat( snapshot.get( null ).getTotal()     ).isEqualTo( 689545 );
+			Truth.assertThat( snapshot.get( "MD" ).getMin()       ).isEqualTo( 585708 );
+			Truth.assertThat( snapshot.get( "Nowhere" ).getCount()).isEqualTo( 0 );
+			Truth.assertThat( snapshot.getStates().keySet()       ).containsExactly( "VA", "MD" );
+			PopulationStats.Summary nation = snapshot.getNation();
+			Truth.assertThat( nation.getCount() ).isEqualTo( 5 );
+			Truth.assertThat( nation.getTotal() ).isEqualTo( 245782L + 210309 + 97469 + 585708 + 689545 );
+			Truth.assertThat( nation.getMin()   ).isEqualTo( 97469 );
+			Truth.assertThat( nation.getMax()   ).isEqualTo( 689545 );
+
+			// a snapshot doesn't change afterwards
+			a1.report( virginiaBeach );
+			Truth.assertThat( snapshot.get( "VA" ).getCount()     ).isEqualTo( 3 );
+			Truth.assertThat( b1.snapshot().get( "VA" ).getMax()  ).isEqualTo( 447021 );
+
+			PopulationStats b2 = new PopulationStats();
+			b2.merge( b1 );
+			b2.merge( b1 );
+			b2.merge( b2 );
+			Truth.assertThat( b2.snapshot().getNation().getCount() ).isEqualTo( 12 );
+			Truth.assertThat( b2.snapshot().get( "VA" ).getMax()   ).isEqualTo( 447021 );
+		}
+		@Test
+		public void testConcurrentSnapshotsAreConsistent() throws InterruptedException {
+			int             threads = 4;
+			int             reports = 50_000;
+			PopulationStats b       = new PopulationStats();
+			Thread[] reporters = new Thread[ threads ];
+			for (int t = 0; t < threads; t++) {
+				CensusOffice a     = new CensusOffice( t + 1 );
+				City         small = new City( "Small" + t, "S" + t, 1 );
+				City         large = new City( "Large" + t, "S" + t, 3 );
+				a.addObserver( b );
+				// each pair adds 4 to the total, so any consistent cut has an
+				// even count and a total of twice that
+				reporters[ t ] = new Thread( () -> {
+					for (int i = 0; i < reports; i++) {
+						a.reportAll( List.of( small, large ));
+					}
+				});
+			}
+			for (Thread t : reporters) {
+				t.start();
+			}
+			boolean running = true;
+			while (running) {
+				running = false;
+				for (Thread t : reporters) {
+					running |= t.isAlive();
+				}
+				PopulationStats.Summary nation = b.snapshot().getNation();
+				Truth.assertThat( nation.getCount() % 2    ).isEqualTo( 0 );
+				Truth.assertThat( nation.getTotal()        ).isEqualTo( 2 * nation.getCount() );
+			}
+			for (Thread t : reporters) {
+				t.join();
+			}
+			PopulationStats.Snapshot done = b.snapshot();
+			Truth.assertThat( done.getNation().getCount() ).isEqualTo( 2L * threads * reports );
+			Truth.assertThat( done.get( "S0" ).getMean()  ).isEqualTo( 2.0 );
+		}
+		@Test
+		public void testManyThreadsShareCells() throws InterruptedException {
+			PopulationStats b         = new PopulationStats();
+			CensusOffice    a         = new CensusOffice( 1 );
+			City            city      = new City( "Norfolk", "VA", 5 );
+			Thread[]        reporters = new Thread[ 200 ];
+			a.addObserver( b );
+			for (int t = 0; t < reporters.length; t++) {
+				reporters[ t ] = new Thread( () -> {
+					for (int i = 0; i < 1_000; i++) {
+						b.updateAll( a, List.of( city ));
+					}
+				});
+				reporters[ t ].start();
+			}
+			for (Thread t : reporters) {
+				t.join();
+			}
+			PopulationStats.Summary va = b.snapshot().get( "VA" );
+			Truth.assertThat( va.getCount() ).isEqualTo( 200_000L );
+			Truth.assertThat( va.getTotal() ).isEqualTo( 1_000_000L );
+		}
+	}
+	@Nested
+	class TestPopulationQuantiles {
+		@Test
+		public void testErrorBound() {
+			for (double accuracy : new double[] { 0.01, 0.05 }) {
+				CensusOffice        a1 = new CensusOffice( 1 );
+				PopulationQuantiles b1 = new PopulationQuantiles( accuracy );
+				a1.addObserver( b1 );
+				Truth.assertThat( b1.getQuantile( 0.5 )).isNaN();
+
+				Random random = new Random( 5 );
+				int[]  exact  = new int[ 100_000 ];
+				List<City> batch = new ArrayList<>();
+				for (int i = 0; i < exact.length; i++) {
+					// spread over every order of magnitude, with some zeros
+					exact[ i ] = i % 1000 == 0 ? 0 : (int) Math.min( Integer.MAX_VALUE, Math.exp( random.nextDouble() * 21.5 ));
+					batch.add( new City( "City" + i, "S" + (i % 50), exact[ i ] ));
+					if (batch.size() == 100) {
+						a1.reportAll( batch );
+						batch = new ArrayList<>();
+					}
+				}
+				a1.report( new City( "Largest", null, Integer.MAX_VALUE ));
+				exact = Arrays.copyOf( exact, exact.length + 1 );
+				exact[ exact.length - 1 ] = Integer.MAX_VALUE;
+				Arrays.sort( exact );
+				Truth.assertThat( b1.getCount() ).isEqualTo( exact.length );
+				for (double q : new double[] { 0, 0.001, 0.01, 0.25, 0.5, 0.9, 0.99, 0.999, 1 }) {
+					int    want = exact[ (int) (q * (exact.length - 1)) ];
+					double got  = b1.getQuantile( q );
+					Truth.assertWithMessage( "q=" + q ).that( Math.abs( got - want )).isAtMost( want * accuracy * (1 + 1e-9) );
+				}
+				Truth.assertThat( b1.getBucketCount() ).isLessThan( (int) (11.0 / accuracy) );
+			}
+		}
+		@Test
+		public void testMergeAndConcurrentOffices() throws InterruptedException {
+			int                 threads = 4;
+			PopulationQuantiles whole   = new PopulationQuantiles();
+			PopulationQuantiles[] parts = new PopulationQuantiles[ threads ];
+			Thread[] reporters = new Thread[ threads ];
+			for (int t = 0; t < threads; t++) {
+				CensusOffice        a    = new CensusOffice( t + 1 );
+				PopulationQuantiles part = parts[ t ] = new PopulationQuantiles();
+				a.addObserver( whole );
+				a.addObserver( part );
+				int offset = t;
+				reporters[ t ] = new Thread( () -> {
+					for (int i = 0; i < 20_000; i++) {
+						a.report( new City( "City", "S", 1 + i * threads + offset ));
+					}
+				});
+				reporters[ t ].start();
+			}
+			for (Thread t : reporters) {
+				t.join();
+			}
+			PopulationQuantiles merged = new PopulationQuantiles();
+			for (PopulationQuantiles part : parts) {
+				merged.merge( part );
+			}
+			merged.merge( merged );
+			Truth.assertThat( whole.getCount()  ).isEqualTo( 80_000 );
+			Truth.assertThat( merged.getCount() ).isEqualTo( 80_000 );
+			for (double q : new double[] { 0, 0.5, 0.9, 0.99, 1 }) {
+				Truth.assertThat( merged.getQuantile( q )).isEqualTo( whole.getQuantile( q ));
+			}
+			Truth.assertThat( Math.abs( whole.getQuantile( 0.5 ) - 40_000 )).isAtMost( 400.0 );
+
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> merged.merge( new PopulationQuantiles( 0.02 )));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "relative accuracy differs: 0.02 vs 0.01" );
+			for (double accuracy : new double[] { 0, 1, Double.NaN }) {
+				t = assertThrows( IllegalArgumentException.class, () -> new PopulationQuantiles( accuracy ));
+				Truth.assertThat( t.getMessage() ).isEqualTo( String.format( "relative accuracy out of range [%s]", accuracy ));
+			}
+			t = assertThrows( IllegalArgumentException.class, () -> merged.getQuantile( 1.5 ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "quantile out of range [1.5]" );
+		}
 	}
 }
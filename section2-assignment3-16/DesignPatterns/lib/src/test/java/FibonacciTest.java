@@ -1,6 +1,8 @@
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTimeout;
 
 import java.lang.reflect.Modifier;
+import java.math.BigInteger;
 import java.lang.reflect.Type;
 import java.time.Duration;
 import java.util.AbstractMap;
@@ -9,6 +11,8 @@ import java.util.Collection;
 import java.util.Dictionary;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -184,5 +188,64 @@ public class FibonacciTest {
 			Truth.assertThat( three.next() ).isEqualTo( expected );
 		}
 	}
+	@Test
+	public void testPrimitiveIterator() {
+		PrimitiveIterator.OfLong iterator = new Fibonacci().iterator();
+		for (long expected : new long[]{ 1,1,2,3,5,8,13,21,34,55,89,144 }) {
+			Truth.assertThat( iterator.nextLong() ).isEqualTo( expected );
+		}
+	}
+	@Test
+	public void testOverflowAtTerm93() {
+		PrimitiveIterator.OfLong iterator = new Fibonacci().iterator();
+		long previous = 0;
+		long actual   = 0;
+		for (int n = 1; n <= 92; n++) {
+			Truth.assertThat( iterator.hasNext() ).isTrue();
+			long next = iterator.nextLong();
+			Truth.assertThat( next ).isEqualTo( n <= 2 ? 1 : actual + previous );
+			previous = actual;
+			actual   = next;
+		}
+		Truth.assertThat( actual              ).isEqualTo( 7540113804746346429L );
+		Truth.assertThat( iterator.hasNext()  ).isFalse();
+		Throwable t = assertThrows( NoSuchElementException.class, () -> iterator.nextLong() );
+		Truth.assertThat( t.getMessage() ).isEqualTo( "fibonacci(93) overflows long" );
+	}
+	@Test
+	public void testStream() {
+		Fibonacci fibonacci = new Fibonacci();
+		Truth.assertThat( fibonacci.stream().limit( 12 ).toArray() ).isEqualTo( new long[]{ 1,1,2,3,5,8,13,21,34,55,89,144 } );
+		Truth.assertThat( fibonacci.stream().count() ).isEqualTo( 92 );
+		Truth.assertThat( fibonacci.stream().skip( 41 ).findFirst().getAsLong() ).isEqualTo( 267914296L );
+	}
+	@Test
+	public void testRandomAccess() {
+		Fibonacci.LongIterator iterator = new Fibonacci().iterator();
+		Truth.assertThat( Fibonacci.get( 0 )).isEqualTo( 0 );
+		for (int n = 1; n <= 92; n++) {
+			long expected = iterator.nextLong();
+			Truth.assertWithMessage( String.format( "fibonacci(%d)", n )).that( Fibonacci.get( n )).isEqualTo( expected );
+			Truth.assertWithMessage( String.format( "fibonacci(%d)", n )).that( Fibonacci.getBig( n )).isEqualTo( BigInteger.valueOf( expected ));
+		}
+		Throwable t = assertThrows( ArithmeticException.class, () -> Fibonacci.get( 93 ));
+		Truth.assertThat( t.getMessage() ).isEqualTo( "fibonacci(93) overflows long" );
+		t = assertThrows( IllegalArgumentException.class, () -> Fibonacci.get( -1 ));
+		Truth.assertThat( t.getMessage() ).isEqualTo( "negative index: -1" );
+
+		Truth.assertThat( Fibonacci.getBig( 93  )).isEqualTo( new BigInteger( "12200160415121876738" ));
+		Truth.assertThat( Fibonacci.getBig( 300 )).isEqualTo( new BigInteger( "222232244629420445529739893461909967206666939096499764990979600" ));
+	}
+	@Test
+	public void testSkip() {
+		Fibonacci.LongIterator iterator = new Fibonacci().iterator();
+		Truth.assertThat( iterator.skip( 41 )    ).isEqualTo( 41 );
+		Truth.assertThat( iterator.nextLong()    ).isEqualTo( 267914296L );
+		Truth.assertThat( iterator.nextLong()    ).isEqualTo( 433494437L );
+		Truth.assertThat( iterator.skip( 0 )     ).isEqualTo( 0 );
+		Truth.assertThat( iterator.nextLong()    ).isEqualTo( 701408733L );
+		Truth.assertThat( iterator.skip( 1000 )  ).isEqualTo( 92 - 44 );
+		Truth.assertThat( iterator.hasNext()     ).isFalse();
+	}
 	
 }
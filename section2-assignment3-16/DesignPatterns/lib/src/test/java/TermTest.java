@@ -1,8 +1,16 @@
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.IOException;
 import java.lang.reflect.Modifier;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.ObjIntConsumer;
@@ -212,6 +220,66 @@ public class TermTest {
 				Truth.assertThat( t.getMessage() ).isEqualTo( "negative value: " + n );
 			}
 		}
+		@Test
+		public void operandCheck() {
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> new Factorial( new Plus( new Number( 1 ), new Number( -3 )))); // (1 + -3)!
+			Truth.assertThat( t.getMessage() ).isEqualTo( "negative value: -2" );
+			t = assertThrows( IllegalArgumentException.class, () -> new Factorial( new Times( new Factorial( new Plus( new Number( 1 ), new Number( 2 ))), new Number( -1 ))));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "negative value: -6" );
+
+			// a Variable, or an operand that throws, can only be checked when evaluated
+			Factorial a = new Factorial( new Plus( new Variable( 0 ), new Number( -3 )));
+			t = assertThrows( UnsupportedOperationException.class, () -> a.getValue() );
+			Truth.assertThat( t.getMessage() ).isEqualTo( "variable 0 has no value" );
+			Factorial b = new Factorial( new Plus( new Factorial( new Number( 13 )), new Number( 1 )));
+			t = assertThrows( ArithmeticException.class, () -> b.getValue() );
+			Truth.assertThat( t.getMessage() ).isEqualTo( "integer overflow: 13!" );
+
+			// each level is checked against the recorded value of the one below
+			Term c = new Number( 2 );
+			for (int i = 0; i < 200_000; i++) {
+				c = new Factorial( new Times( c, new Number( 1 )));
+			}
+			Truth.assertThat( IterativeEvaluator.evaluate( c )).isEqualTo( 2 );
+			Term d = c;
+			t = assertThrows( IllegalArgumentException.class, () -> new Factorial( new Plus( d, new Number( -3 ))));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "negative value: -1" );
+		}
+		@Test
+		public void table() {
+			long expected = 1;
+			for (int n = 0; n <= 20; n++) {
+				expected *= Math.max( n, 1 );
+				Factorial f = new Factorial( new Number( n ));
+				Truth.assertThat( f.getLongValue() ).isEqualTo( expected );
+				Truth.assertThat( f.getBigValue()  ).isEqualTo( BigInteger.valueOf( expected ));
+				if (n <= 12) {
+					Truth.assertThat( f.getValue()         ).isEqualTo( expected );
+					Truth.assertThat( f.getSaturatedValue()).isEqualTo( expected );
+				}
+			}
+		}
+		@Test
+		public void overflow() {
+			Factorial a = new Factorial( new Number( 13 ));
+			Throwable t = assertThrows( ArithmeticException.class, () -> a.getValue() );
+			Truth.assertThat( t.getMessage() ).isEqualTo( "integer overflow: 13!" );
+			Truth.assertThat( a.getSaturatedValue() ).isEqualTo( Integer.MAX_VALUE );
+			Truth.assertThat( a.getLongValue()      ).isEqualTo( 6227020800L );
+
+			Factorial b = new Factorial( new Number( 21 ));
+			t = assertThrows( ArithmeticException.class, () -> b.getLongValue() );
+			Truth.assertThat( t.getMessage() ).isEqualTo( "long overflow: 21!" );
+			Truth.assertThat( b.getBigValue() ).isEqualTo( new BigInteger( "51090942171709440000" ));
+		}
+		@Test
+		public void big() {
+			BigInteger expected = BigInteger.ONE;
+			for (int n = 1; n <= 300; n++) {
+				expected = expected.multiply( BigInteger.valueOf( n ));
+				Truth.assertWithMessage( n + "!" ).that( Factorials.big( n )).isEqualTo( expected );
+			}
+		}
 	}
 	@Nested
 	class TestExpressions {
@@ -250,4 +318,763 @@ public class TermTest {
 			Truth.assertThat( actual ).isEqualTo( expected );
 		}
 	}
+	@Nested
+	class TestCompiledTerm {
+		@Test
+		public void a() {
+			Term  a = new Number(  2 );
+			Term  b = new Number(  5 );
+			Term  c = new Number(  3 );
+			Term  d = new Number(  7 );
+			Term  e = new Number( -1 );
+			Term  f = new Times( new Plus( new Times( a, new Factorial( b )), new Times( new Factorial( c ), d )), e ); // ((2*(5!))+(3!*7))*(-1) 
+			CompiledTerm compiled = TermCompiler.compile( f );
+			Truth.assertThat( compiled.size()       ).isEqualTo( 11 );
+			Truth.assertThat( compiled.getMaxDepth() ).isEqualTo( 3 );
+			Truth.assertThat( compiled.getValue()   ).isEqualTo( f.getValue() );
+			Truth.assertThat( compiled.getValue()   ).isEqualTo( -282 );
+			Truth.assertThat( compiled.evaluate( compiled.newStack() )).isEqualTo( -282 );
+		}
+		@Test
+		public void opaqueTerms() {
+			Term  a = new Number( 6 );
+			Term  b = new BinaryOperator( a, a ) {
+				@Override
+				public int getValue() {
+					return getLeft().getValue() - getRight().getValue() + 1;
+				}
+			};
+			Term  c = new Plus( new Times( a, b ), new Plus( a, a ) {
+				@Override
+				public int getValue() {
+					return 100;
+				}
+			});
+			CompiledTerm compiled = TermCompiler.compile( c );
+			Truth.assertThat( compiled.getValue() ).isEqualTo( c.getValue() );
+			Truth.assertThat( compiled.getValue() ).isEqualTo( 106 );
+		}
+		@Test
+		public void overflowMatchesGetValue() {
+			Term  a = new Times( new Number( Integer.MAX_VALUE ), new Plus( new Number( Integer.MAX_VALUE ), new Number( 3 )));
+			Truth.assertThat( TermCompiler.compile( a ).getValue() ).isEqualTo( a.getValue() );
+		}
+		@Test
+		public void deepTree() {
+			Term  t = new Number( 0 );
+			for (int i = 1; i <= 200_000; i++) {
+				t = new Plus( t, new Number( i ));
+			}
+			CompiledTerm compiled = TermCompiler.compile( t );
+			Truth.assertThat( compiled.getMaxDepth() ).isEqualTo( 2 );
+			Truth.assertThat( compiled.getValue()    ).isEqualTo( (int) (200_000L * 200_001L / 2) );
+		}
+		@Test
+		public void exception() {
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> TermCompiler.compile( null ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "Term cannot be null" );
+			CompiledTerm compiled = TermCompiler.compile( new Plus( new Number( 1 ), new Number( 2 )));
+			t = assertThrows( IllegalArgumentException.class, () -> compiled.evaluate( new int[ 1 ] ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "stack too small: 1 < 2" );
+		}
+	}
+	@Nested
+	class TestIterativeEvaluator {
+		@Test
+		public void matchesGetValue() {
+			Term  a = new Number(  2 );
+			Term  b = new Number(  5 );
+			Term  c = new Number(  3 );
+			Term  d = new Number(  7 );
+			Term  e = new Number( -1 );
+			Term  f = new Times( new Plus( new Times( a, new Factorial( b )), new Times( new Factorial( c ), d )), e ); // ((2*(5!))+(3!*7))*(-1) 
+			Truth.assertThat( IterativeEvaluator.evaluate( f )).isEqualTo( -282 );
+			Truth.assertThat( IterativeEvaluator.evaluate( a )).isEqualTo( 2 );
+
+			Term  g = new Plus( new Number( 6 ), new Plus( a, a ) {
+				@Override
+				public int getValue() {
+					return 100;
+				}
+			});
+			Truth.assertThat( IterativeEvaluator.evaluate( g )).isEqualTo( 106 );
+		}
+		@Test
+		public void deepChains() {
+			Term left  = new Number( 0 );
+			Term right = new Number( 0 );
+			for (int i = 1; i <= 500_000; i++) {
+				left  = new Plus( left, new Number( i ));
+				right = new Plus( new Number( i ), right );
+			}
+			int expected = (int) (500_000L * 500_001L / 2);
+			Truth.assertThat( IterativeEvaluator.evaluate( left  )).isEqualTo( expected );
+			Truth.assertThat( IterativeEvaluator.evaluate( right )).isEqualTo( expected );
+
+			Term nested = new Factorial( new Number( 5 ));
+			for (int i = 0; i < 100_000; i++) {
+				nested = new Times( new Number( 1 ), nested );
+			}
+			Truth.assertThat( IterativeEvaluator.evaluate( nested )).isEqualTo( 120 );
+		}
+		@Test
+		public void deepNary() {
+			Term t = new Number( 0 );
+			for (int i = 1; i <= 300_000; i++) {
+				t = i % 2 == 0 ? new Sum( t, new Number( i ), new Number( 0 )) : new Product( new Number( 1 ), new Plus( t, new Number( i )));
+			}
+			Truth.assertThat( IterativeEvaluator.evaluate( t )).isEqualTo( (int) (300_000L * 300_001L / 2) );
+			Truth.assertThat( IterativeEvaluator.evaluate( new Product( new Number( 2 ), new Sum( new Number( 3 ), new Number( 4 )), new Number( 5 )))).isEqualTo( 70 );
+		}
+		@Test
+		public void exception() {
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> IterativeEvaluator.evaluate( null ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "Term cannot be null" );
+		}
+	}
+	@Nested
+	class TestParallelEvaluator {
+		private Term random(Random random, int height) {
+			if (height <= 0) {
+				int n = random.nextInt( 9 );
+				return n == 0 ? new Factorial( new Number( random.nextInt( 8 ))) : new Number( n - 4 );
+			}
+			if (height > 3 && random.nextInt( 8 ) == 0) {
+				return new Factorial( new Number( 3 ));
+			}
+			Term left  = random( random, height - 1 - random.nextInt( 2 ));
+			Term right = random( random, height - 1 - random.nextInt( 2 ));
+			return random.nextBoolean() ? new Plus( left, right ) : new Times( left, right );
+		}
+		@Test
+		public void matchesSequential() {
+			ForkJoinPool pool = new ForkJoinPool( 4 );
+			try {
+				Random random = new Random( 42 );
+				for (int threshold : List.of( 1, 7, 64, 100_000 )) {
+					ParallelEvaluator evaluator = new ParallelEvaluator( pool, threshold );
+					for (int i = 0; i < 10; i++) {
+						Term t = random( random, 16 );
+						Truth.assertThat( evaluator.evaluate( t )).isEqualTo( t.getValue() );
+					}
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+		@Test
+		public void deepChains() {
+			Term left  = new Number( 0 );
+			Term right = new Number( 0 );
+			for (int i = 1; i <= 300_000; i++) {
+				left  = new Plus( left, new Times( new Number( i ), new Number( 1 )));
+				right = new Plus( new Number( i ), right );
+			}
+			int expected = (int) (300_000L * 300_001L / 2);
+			ParallelEvaluator evaluator = new ParallelEvaluator( ForkJoinPool.commonPool(), 1_000 );
+			Truth.assertThat( evaluator.evaluate( left  )).isEqualTo( expected );
+			Truth.assertThat( evaluator.evaluate( right )).isEqualTo( expected );
+			Truth.assertThat( evaluator.evaluate( new Times( left, new Factorial( new Number( 3 ))))).isEqualTo( expected * 6 );
+		}
+		@Test
+		public void exception() {
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> new ParallelEvaluator( ForkJoinPool.commonPool(), 0 ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "threshold must be greater than 0 [0]" );
+			t = assertThrows( IllegalArgumentException.class, () -> new ParallelEvaluator( null, 10 ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "Pool cannot be null" );
+		}
+	}
+	@Nested
+	class TestValueSemantics {
+		@Test
+		public void equalsAndHashCode() {
+			Term  a = new Plus ( new Times( new Number( 6 ), new Number( 3 )), new Factorial( new Number( 4 )));
+			Term  b = new Plus ( new Times( new Number( 6 ), new Number( 3 )), new Factorial( new Number( 4 )));
+			Term  c = new Plus ( new Times( new Number( 3 ), new Number( 6 )), new Factorial( new Number( 4 )));
+			Term  d = new Times( new Times( new Number( 6 ), new Number( 3 )), new Factorial( new Number( 4 )));
+			Truth.assertThat( a ).isEqualTo( b );
+			Truth.assertThat( a.hashCode() ).isEqualTo( b.hashCode() );
+			Truth.assertThat( a ).isNotEqualTo( c );
+			Truth.assertThat( a ).isNotEqualTo( d );
+			Truth.assertThat( new Number( 7 )).isEqualTo( new Number( 7 ));
+			Truth.assertThat( new Number( 7 )).isNotEqualTo( new Number( 8 ));
+			Truth.assertThat( new Factorial( new Number( 3 ))).isNotEqualTo( new Number( 6 ));
+		}
+		@Test
+		public void sharedAndDeep() {
+			Term a = new Number( 1 );
+			Term b = new Number( 1 );
+			for (int i = 0; i < 40; i++) {
+				a = new Plus( a, a ); // 2^40 leaves, 41 distinct nodes
+				b = new Plus( b, b );
+			}
+			Truth.assertThat( a ).isEqualTo( b );
+			Truth.assertThat( a.hashCode() ).isEqualTo( b.hashCode() );
+			Truth.assertThat( new Sum( a, b )).isEqualTo( new Sum( b, a ));
+			Truth.assertThat( new Sum( a, b )).isNotEqualTo( new Sum( b, new Factorial( a )));
+
+			Term c = new Number( 0 );
+			Term d = new Number( 0 );
+			for (int i = 1; i <= 300_000; i++) {
+				c = new Factorial( new Plus( c, new Number( i )));
+				d = new Factorial( new Plus( d, new Number( i )));
+			}
+			Truth.assertThat( c ).isEqualTo( d );
+			Truth.assertThat( c.hashCode() ).isEqualTo( d.hashCode() );
+			Truth.assertThat( c ).isNotEqualTo( new Factorial( new Plus( ((Factorial) d ).getTerm(), new Number( 0 ))));
+		}
+		@Test
+		public void interning() {
+			TermInterner interner = new TermInterner();
+			Term  a = interner.plus( interner.number( 6 ), interner.number( 3 ));
+			Term  b = interner.plus( interner.number( 6 ), interner.number( 3 ));
+			Truth.assertThat( a ).isSameInstanceAs( b );
+			Truth.assertThat( interner.size() ).isEqualTo( 3 );
+
+			Term  c = new Times( new Plus( new Number( 6 ), new Number( 3 )), new Plus( new Number( 6 ), new Number( 3 )));
+			Term  d = interner.intern( c );
+			Truth.assertThat( d ).isEqualTo( c );
+			Truth.assertThat(((Times) d ).getLeft() ).isSameInstanceAs( a );
+			Truth.assertThat(((Times) d ).getRight()).isSameInstanceAs( a );
+			Truth.assertThat( interner.intern( d )  ).isSameInstanceAs( d );
+			Truth.assertThat( interner.size() ).isEqualTo( 4 );
+
+			Term  e = new Sum( new Variable( 0 ), new Plus( new Number( 6 ), new Number( 3 )), new Product( new Variable( 0 ), new Number( 6 )));
+			Term  f = interner.intern( e );
+			Truth.assertThat( f ).isEqualTo( e );
+			Truth.assertThat( interner.intern( new Sum( new Variable( 0 ), a, new Product( new Variable( 0 ), new Number( 6 ))))).isSameInstanceAs( f );
+			Truth.assertThat(((Sum) f ).getTerm( 0 )).isSameInstanceAs( interner.variable( 0 ));
+			Truth.assertThat( interner.product( interner.variable( 0 ), interner.number( 6 ))).isSameInstanceAs(((Sum) f ).getTerm( 2 ));
+			Truth.assertThat( interner.size() ).isEqualTo( 7 );
+		}
+		@Test
+		public void cacheSharesSubexpressions() {
+			TermInterner interner = new TermInterner();
+			TermCache    cache    = new TermCache( 64 );
+			Term         t        = interner.number( 1 );
+			for (int i = 0; i < 30; i++) {
+				t = interner.plus( t, t ); // 2^30 leaves, 31 distinct nodes
+			}
+			Truth.assertThat( cache.evaluate( t )).isEqualTo( 1 << 30 );
+			Truth.assertThat( cache.getMisses()  ).isEqualTo( 30 );
+			Truth.assertThat( cache.getHits()    ).isEqualTo( 29 );
+
+			Truth.assertThat( cache.evaluate( t )).isEqualTo( 1 << 30 );
+			Truth.assertThat( cache.getMisses()  ).isEqualTo( 30 );
+			Truth.assertThat( cache.getHits()    ).isEqualTo( 30 );
+		}
+		@Test
+		public void cacheIsIterative() {
+			TermCache cache = new TermCache( 1_000_000 );
+			Term      t     = new Number( 0 );
+			for (int i = 1; i <= 300_000; i++) {
+				t = i % 2 == 0 ? new Plus( t, new Number( i )) : new Sum( new Number( i ), t, new Product( new Number( 1 ), new Number( 1 )));
+			}
+			int expected = (int) (300_000L * 300_001L / 2) + 150_000;
+			Truth.assertThat( cache.evaluate( t )).isEqualTo( expected );
+			Truth.assertThat( cache.getMisses()  ).isEqualTo( 450_000 );
+			Truth.assertThat( cache.evaluate( t )).isEqualTo( expected );
+			Truth.assertThat( cache.getHits()    ).isEqualTo( 1 );
+		}
+		@Test
+		public void internedHashIsRecorded() {
+			TermInterner interner = new TermInterner();
+			Term         a        = interner.number( 1 );
+			Term         b        = new Number( 1 );
+			for (int i = 0; i < 100_000; i++) {
+				a = interner.plus( a, interner.factorial( interner.number( i % 5 )));
+				b = new Plus( b, new Factorial( new Number( i % 5 )));
+			}
+			int          expected = b.hashCode();
+			Truth.assertThat( a.hashCode() ).isEqualTo( expected );
+			Truth.assertThat( interner.intern( b )).isSameInstanceAs( a );
+			// each of these would walk 200,000 nodes if the hash weren't recorded
+			for (int i = 0; i < 100_000; i++) {
+				Truth.assertThat( a.hashCode() ).isEqualTo( expected );
+			}
+		}
+		@Test
+		public void cacheIsBounded() {
+			TermCache cache = new TermCache( 2 );
+			Term      a     = new Plus( new Times( new Number( 2 ), new Number( 5 )), new Factorial( new Number( 3 )));
+			Truth.assertThat( cache.evaluate( a )).isEqualTo( 16 );
+			Truth.assertThat( cache.size()       ).isEqualTo( 2 );
+			Truth.assertThat( cache.getMisses()  ).isEqualTo( 3 );
+
+			cache.clear();
+			Truth.assertThat( cache.size()       ).isEqualTo( 0 );
+			Truth.assertThat( cache.getMisses()  ).isEqualTo( 0 );
+
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> new TermCache( 0 ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "capacity must be greater than 0 [0]" );
+		}
+	}
+	@Nested
+	class TestTermParser {
+		@Test
+		public void precedence() {
+			Term  a = new Number(  2 );
+			Term  b = new Number(  5 );
+			Term  c = new Number(  3 );
+			Term  d = new Number(  7 );
+			Term  e = new Number( -1 );
+			Term  f = new Times( new Plus( new Times( a, new Factorial( b )), new Times( new Factorial( c ), d )), e );
+			Truth.assertThat( TermParser.parse( "(2*5! + 3!*7) * -1" )).isEqualTo( f );
+			Truth.assertThat( TermParser.parse( "1+2+3" )).isEqualTo( new Plus( new Plus( new Number( 1 ), new Number( 2 )), new Number( 3 )));
+			Truth.assertThat( TermParser.parse( "1+2*3" )).isEqualTo( new Plus( new Number( 1 ), new Times( new Number( 2 ), new Number( 3 ))));
+			Truth.assertThat( TermParser.parse( "(1+2)!!" )).isEqualTo( new Factorial( new Factorial( new Plus( new Number( 1 ), new Number( 2 )))));
+			Truth.assertThat( TermParser.parse( " -2147483648 " )).isEqualTo( new Number( Integer.MIN_VALUE ));
+			Truth.assertThat( TermParser.parse( new StringBuilder( "((42))" ))).isEqualTo( new Number( 42 ));
+		}
+		@Test
+		public void deepInput() {
+			StringBuilder chain  = new StringBuilder( "0" );
+			StringBuilder nested = new StringBuilder();
+			for (int i = 1; i <= 200_000; i++) {
+				chain.append( '+' ).append( i );
+				nested.append( '(' );
+			}
+			nested.append( 1 );
+			for (int i = 0; i < 200_000; i++) {
+				nested.append( ")*1" );
+			}
+			Truth.assertThat( IterativeEvaluator.evaluate( TermParser.parse( chain  ))).isEqualTo( (int) (200_000L * 200_001L / 2) );
+			Truth.assertThat( IterativeEvaluator.evaluate( TermParser.parse( nested ))).isEqualTo( 1 );
+		}
+		@Test
+		public void deepFactorial() {
+			StringBuilder nested = new StringBuilder();
+			for (int i = 0; i < 200_000; i++) {
+				nested.append( '(' );
+			}
+			nested.append( 1 );
+			for (int i = 0; i < 200_000; i++) {
+				nested.append( "*1)!" );
+			}
+			Truth.assertThat( IterativeEvaluator.evaluate( TermParser.parse( nested ))).isEqualTo( 1 );
+			nested.append( "*-1" );
+			TermSyntaxException t = assertThrows( TermSyntaxException.class, () -> TermParser.parse( "(" + nested + ")!" ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "negative value: -1 at position " + (nested.length() + 2) );
+		}
+		@Test
+		public void file() throws IOException {
+			Path file = Files.createTempFile( "term", ".txt" );
+			try {
+				Files.write( file, "(1 + 2) *\n 3!\n".getBytes( StandardCharsets.US_ASCII ));
+				Truth.assertThat( TermParser.parse( file ).getValue() ).isEqualTo( 18 );
+			}
+			finally {
+				Files.delete( file );
+			}
+		}
+		@Test
+		public void exception() {
+			BiConsumer<String,String> test = (input, message) -> {
+				TermSyntaxException t = assertThrows( TermSyntaxException.class, () -> TermParser.parse( input ));
+				Truth.assertThat( t.getMessage() ).isEqualTo( message );
+			};
+			test.accept( "1 +"         , "unexpected end of input at position 3" );
+			test.accept( ""            , "unexpected end of input at position 0" );
+			test.accept( "1 + * 2"     , "expected a number or '(' but found '*' at position 4" );
+			test.accept( "1 - 2"       , "expected an operator but found '-' at position 2" );
+			test.accept( "-(1)"        , "expected a number or '(' but found '(' at position 1" );
+			test.accept( "(1 + 2))"    , "unmatched ')' at position 7" );
+			test.accept( "1 * ((2 + 3)", "unclosed '(' at position 4" );
+			test.accept( "2147483648"  , "integer literal out of range at position 0" );
+			test.accept( "1 2"         , "expected an operator but found '2' at position 2" );
+			test.accept( "(1 - 2)"     , "expected an operator but found '-' at position 3" );
+			test.accept( "(0 + -2)!"   , "negative value: -2 at position 8" );
+			test.accept( "13!!"        , "integer overflow: 13! at position 3" );
+			test.accept( "(13! + 1)!"  , "integer overflow: 13! at position 9" );
+
+			TermSyntaxException t = assertThrows( TermSyntaxException.class, () -> TermParser.parse( "12 + x" ));
+			Truth.assertThat( t.getPosition() ).isEqualTo( 5 );
+			Throwable n = assertThrows( IllegalArgumentException.class, () -> TermParser.parse((CharSequence) null ));
+			Truth.assertThat( n.getMessage() ).isEqualTo( "Input cannot be null" );
+		}
+	}
+	@Nested
+	class TestTermCodec {
+		@Test
+		public void roundTrip() {
+			Term  a = new Number(  2 );
+			Term  b = new Number(  5 );
+			Term  c = new Number(  3 );
+			Term  d = new Number(  7 );
+			Term  e = new Number( -1 );
+			Term  f = new Times( new Plus( new Times( a, new Factorial( b )), new Times( new Factorial( c ), d )), e ); // ((2*(5!))+(3!*7))*(-1) 
+			ByteBuffer buffer = TermCodec.encode( f );
+			Truth.assertThat( buffer.remaining() ).isEqualTo( TermCodec.encodedSize( f ));
+			Truth.assertThat( buffer.remaining() ).isEqualTo( 4 + 1 + 1 + 1 + 11 + 5 ); // header, 11 opcodes, 5 one-byte constants
+			Truth.assertThat( TermCodec.evaluate( buffer )).isEqualTo( -282 );
+			Truth.assertThat( TermCodec.decode( buffer )).isEqualTo( f );
+			Truth.assertThat( buffer.position() ).isEqualTo( 0 );
+
+			Term  g = new Plus( new Number( Integer.MIN_VALUE ), new Number( Integer.MAX_VALUE ));
+			Truth.assertThat( TermCodec.decode( TermCodec.encode( g ))).isEqualTo( g );
+			Truth.assertThat( TermCodec.evaluate( TermCodec.encode( g ))).isEqualTo( -1 );
+		}
+		@Test
+		public void bufferAndFile() throws IOException {
+			Term  deep = new Number( 0 );
+			for (int i = 1; i <= 100_000; i++) {
+				deep = new Plus( deep, new Number( i ));
+			}
+			ByteBuffer direct = ByteBuffer.allocateDirect( TermCodec.encodedSize( deep ) + 3 );
+			direct.put( new byte[] { 9, 9, 9 } );
+			TermCodec.encode( deep, direct );
+			Truth.assertThat( direct.remaining() ).isEqualTo( 0 );
+			direct.position( 3 );
+			Truth.assertThat( TermCodec.evaluate( direct )).isEqualTo( (int) (100_000L * 100_001L / 2) );
+
+			Path file = Files.createTempFile( "term", ".bin" );
+			try {
+				TermCodec.write( deep, file );
+				Truth.assertThat( Files.size( file )).isEqualTo( TermCodec.encodedSize( deep ));
+				Truth.assertThat( TermCodec.evaluate( TermCodec.map( file ))).isEqualTo( (int) (100_000L * 100_001L / 2) );
+			}
+			finally {
+				Files.delete( file );
+			}
+		}
+		@Test
+		public void exception() {
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> TermCodec.encode( new Plus( new Number( 1 ), new Number( 2 )) {} ));
+			Truth.assertThat( t.getMessage() ).startsWith( "cannot encode class TermTest$" );
+
+			ByteBuffer valid = TermCodec.encode( new Plus( new Number( 1 ), new Number( 2 )));
+			BiConsumer<ByteBuffer,String> test = (buffer, message) -> {
+				Throwable e = assertThrows( IllegalArgumentException.class, () -> TermCodec.evaluate( buffer ));
+				Truth.assertThat( e.getMessage() ).isEqualTo( message );
+				e = assertThrows( IllegalArgumentException.class, () -> TermCodec.decode( buffer ));
+				Truth.assertThat( e.getMessage() ).isEqualTo( message );
+			};
+			test.accept( ByteBuffer.wrap( new byte[] { 1, 2, 3, 4, 5 } ), "not an encoded term" );
+			test.accept( valid.duplicate().limit( 8 ), "truncated term at offset 8" );
+			ByteBuffer copy = ByteBuffer.allocate( valid.remaining() ).put( valid.duplicate() ).flip();
+			copy.put( 4, (byte) 2 );
+			test.accept( copy.duplicate(), "unsupported version 2" );
+			copy.put( 4, (byte) 1 ).put( copy.limit() - 1, (byte) 7 );
+			test.accept( copy.duplicate(), "bad opcode 7 at offset 11" );
+			copy.put( copy.limit() - 1, CompiledTerm.FACT );
+			test.accept( copy.duplicate(), "malformed term at offset 12" );
+			ByteBuffer huge = ByteBuffer.allocate( 16 ).putInt( TermCodec.MAGIC ).put( TermCodec.VERSION );
+			huge.put( new byte[] { -1, -1, -1, -1, 7, -1, -1, -1, -1, 7 } ).put( CompiledTerm.CONST ).flip(); // 2^31-1 instructions in one byte
+			test.accept( huge, "truncated term at offset 16" );
+		}
+	}
+	@Nested
+	class TestTermOptimizer {
+		private final Term x = new Number( 4 ) {
+			@Override
+			public int getValue() {
+				return 10;
+			}
+		};
+		private final Term y = new Plus( new Number( 1 ), new Number( 1 )) {
+			@Override
+			public int getValue() {
+				return 20;
+			}
+		};
+		@Test
+		public void folding() {
+			Term  f = new Times( new Plus( new Times( new Number( 2 ), new Factorial( new Number( 5 ))), new Times( new Factorial( new Number( 3 )), new Number( 7 ))), new Number( -1 ));
+			Truth.assertThat( TermOptimizer.optimize( f )).isEqualTo( new Number( -282 ));
+			Truth.assertThat( TermOptimizer.optimize( new Number( 3 ))).isEqualTo( new Number( 3 ));
+			Truth.assertThat( TermOptimizer.optimize( x )).isSameInstanceAs( x );
+
+			Term  overflow = new Factorial( new Plus( new Number( 6 ), new Number( 7 )));
+			Truth.assertThat( TermOptimizer.optimize( overflow )).isEqualTo( new Factorial( new Number( 13 )));
+			Term  big = new Times( new Number( 1 << 20 ), new Number( 1 << 20 ));
+			Truth.assertThat( TermOptimizer.optimize( big ).getValue() ).isEqualTo( big.getValue() );
+		}
+		@Test
+		public void identities() {
+			Truth.assertThat( TermOptimizer.optimize( new Plus ( x, new Number( 0 )))).isSameInstanceAs( x );
+			Truth.assertThat( TermOptimizer.optimize( new Times( new Number( 1 ), x ))).isSameInstanceAs( x );
+			Truth.assertThat( TermOptimizer.optimize( new Times( x, new Plus( new Number( 3 ), new Number( -3 ))))).isEqualTo( new Product( x, new Number( 0 )));
+			Truth.assertThat( TermOptimizer.optimize( new Times( new Factorial( new Number( 12 )), new Plus( new Number( 3 ), new Number( -3 ))))).isEqualTo( new Number( 0 ));
+			Truth.assertThat( TermOptimizer.optimize( new Factorial( new Times( x, new Number( 1 ))))).isEqualTo( new Factorial( x ));
+			Truth.assertThat( TermOptimizer.optimize( new Plus( x, new Factorial( new Number( 0 ))))).isEqualTo( new Sum( x, new Number( 1 )));
+		}
+		@Test
+		public void zeroKeepsThrowingOperands() {
+			Term  t = new Sum( new Number( -2 ), new Product( new Number( 0 ), new Factorial( new Number( 13 ))));
+			Term  o = TermOptimizer.optimize( t );
+			Truth.assertThat( o ).isEqualTo( new Sum( new Product( new Factorial( new Number( 13 )), new Number( 0 )), new Number( -2 )));
+			assertThrows( ArithmeticException.class, () -> t.getValue() );
+			assertThrows( ArithmeticException.class, () -> o.getValue() );
+
+			Term  negative = new Times( new Times( new Factorial( new Variable( 0 )), new Number( 0 )), new Variable( 1 ));
+			Truth.assertThat( TermOptimizer.optimize( negative )).isEqualTo( new Product( new Factorial( new Variable( 0 )), new Variable( 1 ), new Number( 0 )));
+
+			Term  unbound = new Times( new Variable( 0 ), new Number( 0 ));
+			Term  u       = TermOptimizer.optimize( unbound );
+			Truth.assertThat( u ).isEqualTo( new Product( new Variable( 0 ), new Number( 0 )));
+			assertThrows( UnsupportedOperationException.class, () -> unbound.getValue() );
+			assertThrows( UnsupportedOperationException.class, () -> u.getValue() );
+		}
+		@Test
+		public void flattening() {
+			// ((x + 2) + (y + 3)) + (x * 2 * 3)
+			Term  t = new Plus( new Plus( new Plus( x, new Number( 2 )), new Plus( y, new Number( 3 ))), new Times( new Times( x, new Number( 2 )), new Number( 3 )));
+			Term  o = TermOptimizer.optimize( t );
+			Truth.assertThat( o ).isEqualTo( new Sum( x, y, new Product( x, new Number( 6 )), new Number( 5 )));
+			Truth.assertThat( o.getValue() ).isEqualTo( t.getValue() );
+			Truth.assertThat( o.getValue() ).isEqualTo( 95 );
+			Truth.assertThat((( Sum ) o ).getTerms() ).hasSize( 4 );
+
+			Term  chain = new Number( 0 );
+			for (int i = 1; i <= 100_000; i++) {
+				chain = new Plus( chain, i % 2 == 0 ? new Number( i ) : x );
+			}
+			o = TermOptimizer.optimize( chain );
+			Truth.assertThat((( Sum ) o ).size() ).isEqualTo( 50_001 );
+			Truth.assertThat( o.getValue() ).isEqualTo( 50_000 * 10 + (int) (50_000L * 50_001L) );
+			Truth.assertThat( TermCompiler.compile( o ).getValue() ).isEqualTo( o.getValue() );
+			Truth.assertThat( TermCompiler.compile( o ).getMaxDepth() ).isEqualTo( 2 );
+		}
+		@Test
+		public void shared() {
+			Term  a = new Number( 1 );
+			Term  v = new Variable( 0 );
+			for (int i = 0; i < 40; i++) {
+				a = new Plus( a, a );
+				v = new Plus( new Times( v, new Number( 1 )), v );
+			}
+			Truth.assertThat( TermOptimizer.optimize( a )).isEqualTo( new Number( (int) (1L << 40) ));
+
+			Term  o = TermOptimizer.optimize( v );
+			for (int i = 0; i < 40; i++) {
+				Sum  sum = ( Sum ) o;
+				Truth.assertThat( sum.size() ).isEqualTo( 2 );
+				Truth.assertThat( sum.getTerm( 0 )).isSameInstanceAs( sum.getTerm( 1 ));
+				o = sum.getTerm( 0 );
+			}
+			Truth.assertThat( o ).isEqualTo( new Variable( 0 ));
+		}
+		@Test
+		public void naryOperator() {
+			Truth.assertThat( new Sum( new Number( 1 ), new Number( 2 ), new Number( 3 )).getValue() ).isEqualTo( 6 );
+			Truth.assertThat( new Product( new Number( 2 ), new Number( 3 ), new Number( 4 )).getValue() ).isEqualTo( 24 );
+			Truth.assertThat( new Sum( x, y )).isNotEqualTo( new Product( x, y ));
+			Truth.assertThat( new Sum( x, y ).hashCode() ).isEqualTo( new Sum( x, y ).hashCode() );
+			Truth.assertThat( TermCodec.decode( TermCodec.encode( new Product( new Number( 2 ), new Number( 3 ), new Number( 4 )))))
+				.isEqualTo( new Times( new Times( new Number( 2 ), new Number( 3 )), new Number( 4 )));
+
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> new Sum( x ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "at least 2 terms required [1]" );
+			t = assertThrows( IllegalArgumentException.class, () -> new Product( x, null ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "Term cannot be null" );
+			t = assertThrows( IllegalArgumentException.class, () -> TermOptimizer.optimize( null ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "Term cannot be null" );
+		}
+	}
+	@Nested
+	class TestBulkEvaluator {
+		// (x0 * 3 + x1!) * (x0 + -2)
+		private Term formula(Term x0, Term x1) {
+			return new Times( new Plus( new Times( x0, new Number( 3 )), new Factorial( x1 )), new Plus( x0, new Number( -2 )));
+		}
+		@Test
+		public void variable() {
+			Variable x = new Variable( 1 );
+			Truth.assertThat( x.getIndex() ).isEqualTo( 1 );
+			Truth.assertThat( x ).isEqualTo( new Variable( 1 ));
+			Truth.assertThat( x ).isNotEqualTo( new Variable( 2 ));
+			Throwable t = assertThrows( UnsupportedOperationException.class, () -> x.getValue() );
+			Truth.assertThat( t.getMessage() ).isEqualTo( "variable 1 has no value" );
+			t = assertThrows( UnsupportedOperationException.class, () -> new Plus( x, new Number( 1 )).getValue() );
+			Truth.assertThat( t.getMessage() ).isEqualTo( "variable 1 has no value" );
+			t = assertThrows( UnsupportedOperationException.class, () -> TermCompiler.compile( new Factorial( x )).getValue() );
+			Truth.assertThat( t.getMessage() ).isEqualTo( "variable 1 has no value" );
+			t = assertThrows( IllegalArgumentException.class, () -> new Variable( -1 ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "negative index: -1" );
+
+			Term  f = formula( new Variable( 0 ), x );
+			Truth.assertThat( TermCodec.decode( TermCodec.encode( f ))).isEqualTo( f );
+			Truth.assertThat( TermOptimizer.optimize( new Plus( new Times( x, new Number( 1 )), new Number( 0 )))).isSameInstanceAs( x );
+		}
+		@Test
+		public void intColumns() {
+			int     rows = 3 * BulkEvaluator.BLOCK + 17;
+			int[]   x0   = new int[rows];
+			int[]   x1   = new int[rows];
+			Random  random = new Random( 7 );
+			for (int r = 0; r < rows; r++) {
+				x0[r] = random.nextInt();
+				x1[r] = random.nextInt( 13 );
+			}
+			BulkEvaluator bulk = new BulkEvaluator( formula( new Variable( 0 ), new Variable( 1 )));
+			Truth.assertThat( bulk.getColumnCount() ).isEqualTo( 2 );
+			int[] out = new int[rows];
+			bulk.evaluate( new int[][] { x0, x1, null }, out );
+			for (int r = 0; r < rows; r++) {
+				Truth.assertThat( out[r] ).isEqualTo( formula( new Number( x0[r] ), new Number( x1[r] )).getValue() );
+			}
+
+			int[] constant = new int[5];
+			new BulkEvaluator( new Plus( new Number( 4 ), new Factorial( new Number( 3 )))).evaluate( new int[0][], constant );
+			Truth.assertThat( constant[4] ).isEqualTo( 10 );
+		}
+		@Test
+		public void longColumns() {
+			long[] x0  = { 1, 2, 3_000_000_000L, -5 };
+			long[] x1  = { 0, 20, 1, 2 };
+			long[] out = new long[4];
+			new BulkEvaluator( formula( new Variable( 0 ), new Variable( 1 ))).evaluate( new long[][] { x0, x1 }, out );
+			for (int r = 0; r < out.length; r++) {
+				long expected = (x0[r] * 3 + Factorials.longExact( (int) x1[r] )) * (x0[r] - 2);
+				Truth.assertThat( out[r] ).isEqualTo( expected );
+			}
+		}
+		@Test
+		public void exception() {
+			BulkEvaluator bulk = new BulkEvaluator( formula( new Variable( 0 ), new Variable( 1 )));
+			BiConsumer<Runnable,String> test = (r, message) -> {
+				Throwable t = assertThrows( RuntimeException.class, r::run );
+				Truth.assertThat( t.getMessage() ).isEqualTo( message );
+			};
+			test.accept( () -> bulk.evaluate( new int[][] { new int[2] }, new int[2] ), "expected 2 columns but got 1" );
+			test.accept( () -> bulk.evaluate( new int[][] { new int[2], new int[1] }, new int[2] ), "column 1 has 1 rows, expected 2" );
+			test.accept( () -> bulk.evaluate( new long[][] { null, new long[2] }, new long[2] ), "column 0 cannot be null" );
+			test.accept( () -> bulk.evaluate((int[][]) null, new int[2] ), "Columns cannot be null" );
+			test.accept( () -> bulk.evaluate( new int[][] { new int[2], { 1, 13 } }, new int[2] ), "integer overflow: 13!" );
+			test.accept( () -> bulk.evaluate( new long[][] { new long[2], { 1, 21 } }, new long[2] ), "long overflow: 21!" );
+			test.accept( () -> bulk.evaluate( new long[][] { new long[2], { 1, -4 } }, new long[2] ), "negative value: -4" );
+		}
+	}
+	@Nested
+	class TestTermGenerator {
+		@Test
+		public void generated() {
+			TermGenerator generator = new TermGenerator();
+			Term  a = new Number(  2 );
+			Term  b = new Number(  5 );
+			Term  c = new Number(  3 );
+			Term  d = new Number(  7 );
+			Term  e = new Number( -1 );
+			Term  f = new Times( new Plus( new Times( a, new Factorial( b )), new Times( new Factorial( c ), d )), e ); // ((2*(5!))+(3!*7))*(-1) 
+			Formula g = generator.generate( f );
+			Truth.assertThat( g.getValue() ).isEqualTo( -282 );
+			Truth.assertThat( g.evaluate( null )).isEqualTo( -282 );
+			Truth.assertThat( g instanceof TermGenerator.Base ).isEqualTo( TermGenerator.isSupported() ); // hidden classes need Java 15+
+
+			Term  constants = new Plus( new Times( new Number( 1_000_000 ), new Number( -300 )), new Plus( new Number( 100 ), new Number( Integer.MIN_VALUE )));
+			Truth.assertThat( generator.generate( constants ).getValue() ).isEqualTo( constants.getValue() );
+
+			Term  opaque = new Plus( new Number( 6 ), new Plus( a, a ) {
+				@Override
+				public int getValue() {
+					return 100;
+				}
+			});
+			Truth.assertThat( generator.generate( opaque ).getValue() ).isEqualTo( 106 );
+		}
+		@Test
+		public void variables() {
+			TermGenerator generator = new TermGenerator();
+			Formula f = generator.generate( new Times( new Plus( new Variable( 0 ), new Number( 300 )), new Factorial( new Variable( 2 ))));
+			Truth.assertThat( f.evaluate( new int[] { 1, 99, 4 } )).isEqualTo( 301 * 24 );
+			Truth.assertThat( f.evaluate( new int[] { -300, 99, 12 } )).isEqualTo( 0 );
+			Throwable t = assertThrows( UnsupportedOperationException.class, () -> f.getValue() );
+			Truth.assertThat( t.getMessage() ).isEqualTo( "variable 0 has no value" );
+			t = assertThrows( ArithmeticException.class, () -> f.evaluate( new int[] { 1, 1, 13 } ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "integer overflow: 13!" );
+		}
+		@Test
+		public void cache() {
+			Throwable t = assertThrows( IllegalArgumentException.class, () -> new TermGenerator( 0 ));
+			Truth.assertThat( t.getMessage() ).isEqualTo( "capacity must be greater than 0 [0]" );
+
+			TermGenerator generator = new TermGenerator( 2 );
+			if (!TermGenerator.isSupported()) {
+				Truth.assertThat( generator.generate( new Plus( new Number( 1 ), new Number( 2 ))).getValue() ).isEqualTo( 3 );
+				Truth.assertThat( generator.getGenerated() ).isEqualTo( 0 );
+				return;
+			}
+			Formula x = generator.generate( new Plus( new Number( 1 ), new Number( 2 )));
+			Formula y = generator.generate( new Plus( new Number( 1 ), new Number( 2 )));
+			Truth.assertThat( x.getClass() ).isSameInstanceAs( y.getClass() );
+			Truth.assertThat( generator.getGenerated() ).isEqualTo( 1 );
+
+			// opaque terms are per instance, so they don't need a class of their own
+			Term  p = new Number( 0 ) {
+				@Override
+				public int getValue() {
+					return 40;
+				}
+			};
+			Term  q = new Number( 0 ) {
+				@Override
+				public int getValue() {
+					return 50;
+				}
+			};
+			Formula u = generator.generate( new Times( p, new Number( 2 )));
+			Formula v = generator.generate( new Times( q, new Number( 2 )));
+			Truth.assertThat( u.getValue() ).isEqualTo( 80 );
+			Truth.assertThat( v.getValue() ).isEqualTo( 100 );
+			Truth.assertThat( u.getClass() ).isSameInstanceAs( v.getClass() );
+			Truth.assertThat( generator.getGenerated() ).isEqualTo( 2 );
+
+			generator.generate( new Plus( new Number( 1 ), new Number( 3 )));
+			Truth.assertThat( generator.size() ).isEqualTo( 2 );
+			Truth.assertThat( generator.getGenerated() ).isEqualTo( 3 );
+			Truth.assertThat( generator.generate( new Plus( new Number( 1 ), new Number( 2 ))).getValue() ).isEqualTo( 3 );
+			Truth.assertThat( generator.getGenerated() ).isEqualTo( 4 );
+		}
+		@Test
+		public void tooLarge() {
+			Term  t = new Number( 0 );
+			for (int i = 1; i <= 10_000; i++) {
+				t = new Plus( t, new Variable( i % 3 ));
+			}
+			Formula f = new TermGenerator().generate( t );
+			Truth.assertThat( f ).isNotInstanceOf( TermGenerator.Base.class );
+			Truth.assertThat( f.evaluate( new int[] { 1, 2, 3 } )).isEqualTo( 3333 * 1 + 3334 * 2 + 3333 * 3 );
+		}
+	}
+	@Nested
+	class TestEvaluationModes {
+		@Test
+		public void noOverflow() {
+			Term  f = new Times( new Plus( new Times( new Number( 2 ), new Factorial( new Number( 5 ))), new Times( new Factorial( new Number( 3 )), new Number( 7 ))), new Number( -1 ));
+			CompiledTerm c = TermCompiler.compile( f );
+			Truth.assertThat( c.getExactValue() ).isEqualTo( -282 );
+			Truth.assertThat( c.getLongValue()  ).isEqualTo( -282L );
+			Truth.assertThat( c.getBigValue()   ).isEqualTo( BigInteger.valueOf( -282 ));
+		}
+		@Test
+		public void overflow() {
+			// 65536 * 65536 + 12! wraps as an int
+			Term  t = new Plus( new Times( new Number( 65536 ), new Number( 65536 )), new Factorial( new Number( 12 )));
+			CompiledTerm c = TermCompiler.compile( t );
+			Truth.assertThat( c.getValue() ).isEqualTo( 479001600 );
+			Truth.assertThat( c.getLongValue() ).isEqualTo( 4294967296L + 479001600L );
+			Truth.assertThat( c.getBigValue()  ).isEqualTo( BigInteger.valueOf( 4294967296L + 479001600L ));
+			Throwable e = assertThrows( ArithmeticException.class, () -> c.getExactValue() );
+			Truth.assertThat( e.getMessage() ).isEqualTo( "integer overflow: 65536 * 65536" );
+
+			CompiledTerm sum = TermCompiler.compile( new Plus( new Number( Integer.MAX_VALUE ), new Number( 1 )));
+			e = assertThrows( ArithmeticException.class, () -> sum.getExactValue() );
+			Truth.assertThat( e.getMessage() ).isEqualTo( "integer overflow: 2147483647 + 1" );
+			Truth.assertThat( sum.getLongValue() ).isEqualTo( 2147483648L );
+
+			Term  big = new Number( Integer.MAX_VALUE );
+			for (int i = 0; i < 3; i++) {
+				big = new Times( big, big );
+			}
+			CompiledTerm wide = TermCompiler.compile( big );
+			e = assertThrows( ArithmeticException.class, () -> wide.getLongValue() );
+			Truth.assertThat( e.getMessage() ).isEqualTo( "long overflow: 4611686014132420609 * 4611686014132420609" );
+			Truth.assertThat( wide.getBigValue() ).isEqualTo( BigInteger.valueOf( Integer.MAX_VALUE ).pow( 8 ));
+
+			CompiledTerm fact = TermCompiler.compile( new Factorial( new Plus( new Number( 20 ), new Number( 1 ))));
+			e = assertThrows( ArithmeticException.class, () -> fact.getLongValue() );
+			Truth.assertThat( e.getMessage() ).isEqualTo( "long overflow: 21!" );
+			Truth.assertThat( fact.getBigValue() ).isEqualTo( Factorials.big( 21 ));
+		}
+	}
 }